@@ -0,0 +1,364 @@
+package control;
+
+import data.OffHeapQuoteStore;
+import data.Utils;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The {@code BatchRunner} prices a whole manifest by splitting it into shards that are processed in parallel.
+ * <p>
+ * The manifest is a text file with one parcel {@code length;width;height;weight} per line. It is split into
+ * byte ranges that start and end at line boundaries, one per worker. Every shard is priced by a
+ * {@link BatchWorker}, by default in its own local JVM, or on a thread of this JVM if processes are disabled
+ * or cannot be started. The shard results are concatenated in input order and their statistics are merged.
+ * </p>
+ */
+public class BatchRunner {
+
+    /**
+     * Pricing options of a batch run.
+     */
+    public static class Options {
+        public final Utils.Company company;
+        public final boolean express;
+        public final double vat;
+        // optimized quotes ignore express and vat, like in the calculator area
+        public final boolean optimize;
+
+        public Options(Utils.Company company, boolean express, double vat, boolean optimize) {
+            this.company = company;
+            this.express = express;
+            this.vat = vat;
+            this.optimize = optimize;
+        }
+
+        List<String> toArgs() {
+            return List.of(company.name(), Boolean.toString(express), Double.toString(vat), Boolean.toString(optimize));
+        }
+
+        static Options fromArgs(String[] args, int offset) {
+            return new Options(
+                    Utils.Company.valueOf(args[offset]),
+                    Boolean.parseBoolean(args[offset + 1]),
+                    Double.parseDouble(args[offset + 2]),
+                    Boolean.parseBoolean(args[offset + 3]));
+        }
+    }
+
+    private final Options options;
+    private final int workers;
+    private boolean useProcesses = true;
+    private OffHeapQuoteStore quoteStore;
+    private QuoteJournal journal;
+
+    public BatchRunner(Options options, int workers) {
+        this.options = options;
+        this.workers = Math.max(1, workers);
+    }
+
+    /**
+     * @param useProcesses true to start a JVM per shard, false to use threads of this JVM.
+     */
+    public void setUseProcesses(boolean useProcesses) {
+        this.useProcesses = useProcesses;
+    }
+
+    /**
+     * Sets a store that memoizes optimized quotes. The store lives in this JVM, so shards run on threads.
+     *
+     * @param quoteStore the store, or null.
+     */
+    public void setQuoteStore(OffHeapQuoteStore quoteStore) {
+        this.quoteStore = quoteStore;
+    }
+
+    /**
+     * Sets a journal that records every quote. The journal lives in this JVM, so shards run on threads.
+     *
+     * @param journal the journal, or null.
+     */
+    public void setJournal(QuoteJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Prices the manifest and writes one line per parcel to the output, in input order.
+     *
+     * @param manifest the input file.
+     * @param output the output file.
+     * @return the merged statistics of all shards.
+     * @throws IOException if reading, writing or a worker fails.
+     */
+    public QuoteStatistics run(Path manifest, Path output) throws IOException {
+        long[] bounds = split(manifest, workers);
+        int shards = bounds.length - 1;
+        Path tempDir = Files.createTempDirectory("batch");
+        List<Path> outputs = new ArrayList<>(shards);
+        try {
+            for (int i = 0; i < shards; i++) {
+                outputs.add(tempDir.resolve("shard" + i + ".csv"));
+            }
+
+            List<QuoteStatistics> statistics = null;
+            if (useProcesses && quoteStore == null && journal == null) {
+                statistics = runProcesses(manifest, bounds, outputs, tempDir);
+            }
+            if (statistics == null) {
+                statistics = runThreads(manifest, bounds, outputs);
+            }
+
+            // concatenate the shard outputs in input order
+            try (FileChannel target = FileChannel.open(output, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (Path shard : outputs) {
+                    try (FileChannel source = FileChannel.open(shard, StandardOpenOption.READ)) {
+                        long size = source.size();
+                        for (long position = 0; position < size; ) {
+                            position += source.transferTo(position, size - position, target);
+                        }
+                    }
+                }
+            }
+
+            QuoteStatistics result = new QuoteStatistics();
+            for (QuoteStatistics shard : statistics) {
+                result.merge(shard);
+            }
+            return result;
+        } finally {
+            // all workers have stopped here, a leftover file must not hide the outcome of the run
+            try (var files = Files.list(tempDir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(file);
+                }
+                Files.deleteIfExists(tempDir);
+            } catch (IOException e) {
+                System.err.println("Could not delete " + tempDir + ": " + e);
+            }
+        }
+    }
+
+    /**
+     * Splits a file into at most {@code parts} byte ranges that start at line boundaries.
+     *
+     * @param file the file to split.
+     * @param parts the desired number of ranges.
+     * @return the range bounds, range i is [bounds[i], bounds[i+1]).
+     * @throws IOException if reading fails.
+     */
+    static long[] split(Path file, int parts) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<Long> bounds = new ArrayList<>(parts + 1);
+            bounds.add(0L);
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            for (int i = 1; i < parts; i++) {
+                long position = Math.max(size * i / parts, bounds.get(bounds.size() - 1));
+                // move to the byte after the next line break
+                long next = size;
+                search:
+                while (position < size) {
+                    buffer.clear();
+                    int read = channel.read(buffer, position);
+                    for (int j = 0; j < read; j++) {
+                        if (buffer.get(j) == '\n') {
+                            next = position + j + 1;
+                            break search;
+                        }
+                    }
+                    position += read;
+                }
+                if (next > bounds.get(bounds.size() - 1) && next < size) {
+                    bounds.add(next);
+                }
+            }
+            bounds.add(size);
+            return bounds.stream().mapToLong(Long::longValue).toArray();
+        }
+    }
+
+    /**
+     * Runs every shard in a separate JVM with the classpath of this JVM.
+     *
+     * @return the shard statistics, or null if the processes could not be started.
+     */
+    private List<QuoteStatistics> runProcesses(Path manifest, long[] bounds, List<Path> outputs, Path tempDir)
+            throws IOException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        List<Process> processes = new ArrayList<>();
+        List<Path> statisticsFiles = new ArrayList<>();
+        try {
+            for (int i = 0; i < outputs.size(); i++) {
+                Path statisticsFile = tempDir.resolve("shard" + i + ".stats");
+                statisticsFiles.add(statisticsFile);
+
+                // workers never load JavaFX, but they can share the class data archive of the headless entry point
+                List<String> command = new ArrayList<>(List.of(java, "-cp", System.getProperty("java.class.path")));
+                String archive = System.getProperty(Headless.CDS_ARCHIVE_PROPERTY);
+                if (archive != null && Files.exists(Path.of(archive))) {
+                    command.add("-XX:SharedArchiveFile=" + archive);
+                }
+                command.addAll(List.of(BatchWorker.class.getName(), manifest.toString(),
+                        Long.toString(bounds[i]), Long.toString(bounds[i + 1]),
+                        outputs.get(i).toString(), statisticsFile.toString()));
+                command.addAll(options.toArgs());
+
+                processes.add(new ProcessBuilder(command)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start());
+            }
+        } catch (IOException e) {
+            System.err.println("Could not start worker processes, falling back to threads: " + e.getMessage());
+            destroyAll(processes);
+            return null;
+        }
+
+        boolean finished = false;
+        try {
+            List<QuoteStatistics> statistics = new ArrayList<>();
+            for (int i = 0; i < processes.size(); i++) {
+                try {
+                    int exitCode = processes.get(i).waitFor();
+                    if (exitCode != 0) {
+                        throw new IOException("Worker for shard " + i + " failed with exit code " + exitCode);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for workers", e);
+                }
+                try (DataInputStream in = new DataInputStream(Files.newInputStream(statisticsFiles.get(i)))) {
+                    statistics.add(QuoteStatistics.readFrom(in));
+                }
+            }
+            finished = true;
+            return statistics;
+        } finally {
+            if (!finished) {
+                destroyAll(processes);
+            }
+        }
+    }
+
+    /**
+     * Kills the processes and waits until they are gone, so none of them still writes to the shard files.
+     */
+    private static void destroyAll(List<Process> processes) {
+        processes.forEach(Process::destroyForcibly);
+        boolean interrupted = false;
+        for (Process process : processes) {
+            while (process.isAlive()) {
+                try {
+                    process.waitFor();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs every shard on its own thread of this JVM.
+     */
+    private List<QuoteStatistics> runThreads(Path manifest, long[] bounds, List<Path> outputs) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(outputs.size());
+        try {
+            List<Future<QuoteStatistics>> futures = new ArrayList<>();
+            for (int i = 0; i < outputs.size(); i++) {
+                final int shard = i;
+                futures.add(executor.submit(() -> {
+                    BatchWorker worker = new BatchWorker(options, quoteStore);
+                    worker.setJournal(journal);
+                    return worker.processShard(manifest, bounds[shard], bounds[shard + 1], outputs.get(shard));
+                }));
+            }
+            List<QuoteStatistics> statistics = new ArrayList<>();
+            for (Future<QuoteStatistics> future : futures) {
+                statistics.add(future.get());
+            }
+            return statistics;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for workers", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Worker failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Command line entry point.
+     * <p>
+     * Usage: {@code BatchRunner <manifest> <output> [--workers n] [--threads] [--carrier DHL|HERMES]
+     * [--express] [--vat 0.19] [--optimize] [--cache file] [--journal dir]}
+     * </p>
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BatchRunner <manifest> <output> [--workers n] [--threads] "
+                    + "[--carrier DHL|HERMES] [--express] [--vat 0.19] [--optimize] [--cache file] [--journal dir]");
+            System.exit(1);
+        }
+        int workers = Runtime.getRuntime().availableProcessors();
+        boolean useProcesses = true;
+        Utils.Company company = Utils.Company.DHL;
+        boolean express = false;
+        double vat = 0;
+        boolean optimize = false;
+        Path cache = null;
+        Path journalDirectory = null;
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--workers" -> workers = Integer.parseInt(args[++i]);
+                case "--threads" -> useProcesses = false;
+                case "--carrier" -> company = Utils.Company.valueOf(args[++i].toUpperCase());
+                case "--express" -> express = true;
+                case "--vat" -> vat = Double.parseDouble(args[++i]);
+                case "--optimize" -> optimize = true;
+                case "--cache" -> cache = Path.of(args[++i]);
+                case "--journal" -> journalDirectory = Path.of(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        BatchRunner runner = new BatchRunner(new Options(company, express, vat, optimize), workers);
+        runner.setUseProcesses(useProcesses);
+        OffHeapQuoteStore quoteStore = null;
+        if (cache != null) {
+            quoteStore = OffHeapQuoteStore.open(cache, 10_000_000, new Calculator().getTariffVersion());
+            runner.setQuoteStore(quoteStore);
+        }
+        QuoteJournal journal = null;
+        if (journalDirectory != null) {
+            journal = new QuoteJournal(journalDirectory);
+            runner.setJournal(journal);
+        }
+        long start = System.nanoTime();
+        QuoteStatistics statistics = runner.run(Path.of(args[0]), Path.of(args[1]));
+        if (quoteStore != null) {
+            quoteStore.close();
+        }
+        if (journal != null) {
+            journal.close();
+        }
+        System.out.print(statistics.report());
+        System.out.printf("Finished in %d ms%n", (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,171 @@
+package control;
+
+import data.OffHeapQuoteStore;
+import data.Packet;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The {@code BatchWorker} prices one shard of a manifest, i.e. a byte range that starts and ends at line boundaries.
+ * <p>
+ * It is started by {@link BatchRunner} either as a separate JVM (see {@link #main(String[])}) or on a thread
+ * of the coordinator. Each non-empty input line {@code length;width;height;weight} produces exactly one output line
+ * {@code length;width;height;weight;carrier;tier;price}. Lines that cannot be priced get tier
+ * {@link Calculator#REJECTED}, price {@code NaN} and the reason as an additional column.
+ * </p>
+ */
+public class BatchWorker {
+
+    private final BatchRunner.Options options;
+    private final Calculator calculator = new Calculator();
+    private final QuoteAggregator aggregator = new QuoteAggregator();
+    private final OffHeapQuoteStore quoteStore;
+
+    public BatchWorker(BatchRunner.Options options) {
+        this(options, null);
+    }
+
+    /**
+     * @param options the pricing options.
+     * @param quoteStore memoizes optimized quotes, may be shared between workers of one JVM or be null.
+     */
+    public BatchWorker(BatchRunner.Options options, OffHeapQuoteStore quoteStore) {
+        this.options = options;
+        this.quoteStore = quoteStore;
+        calculator.setShippingChoice(options.company);
+        calculator.setAggregator(aggregator);
+    }
+
+    /**
+     * Records every quote of this worker in a journal.
+     *
+     * @param journal the journal, may be shared between workers of one JVM or be null.
+     */
+    public void setJournal(QuoteJournal journal) {
+        calculator.setJournal(journal);
+    }
+
+    /**
+     * Prices all lines in the byte range [start, end) of the manifest.
+     *
+     * @param manifest the input file.
+     * @param start first byte of the shard, must be the start of a line.
+     * @param end first byte after the shard, must be the start of a line or the file size.
+     * @param output the file to write the priced lines to.
+     * @return the statistics of the shard.
+     * @throws IOException if reading or writing fails.
+     */
+    public QuoteStatistics processShard(Path manifest, long start, long end, Path output) throws IOException {
+        try (FileChannel channel = FileChannel.open(manifest, StandardOpenOption.READ);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(
+                     new ShardInputStream(channel, start, end), StandardCharsets.UTF_8), 1 << 16);
+             BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                writer.write(price(line));
+                writer.newLine();
+            }
+        }
+        return aggregator.snapshot();
+    }
+
+    /**
+     * Prices one manifest line.
+     *
+     * @param line {@code length;width;height;weight}
+     * @return the output line.
+     */
+    String price(String line) {
+        String prefix = line + ";" + options.company + ";";
+        try {
+            String[] tokens = line.split(";");
+            Packet packet = new Packet(
+                    Integer.parseInt(tokens[0].trim()),
+                    Integer.parseInt(tokens[1].trim()),
+                    Integer.parseInt(tokens[2].trim()),
+                    Integer.parseInt(tokens[3].trim()));
+
+            Calculator.TierPrice quote = calculator.quote(packet, options.express, options.vat, options.optimize,
+                    quoteStore);
+            return prefix + quote.tier + ";" + quote.price;
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            aggregator.recordRejection("Invalid line");
+            return prefix + Calculator.REJECTED + ";NaN;Invalid line";
+        } catch (AssertionError e) {
+            // thrown by the packet validation
+            aggregator.recordRejection(e.getMessage());
+            return prefix + Calculator.REJECTED + ";NaN;" + e.getMessage();
+        } catch (IllegalArgumentException e) {
+            // already counted by the calculator
+            return prefix + Calculator.REJECTED + ";NaN;" + e.getMessage();
+        }
+    }
+
+    /**
+     * Entry point of a worker JVM.
+     *
+     * @param args manifest, start, end, output file, statistics file, followed by the {@link BatchRunner.Options}.
+     */
+    public static void main(String[] args) throws IOException {
+        Path manifest = Path.of(args[0]);
+        long start = Long.parseLong(args[1]);
+        long end = Long.parseLong(args[2]);
+        Path output = Path.of(args[3]);
+        Path statisticsFile = Path.of(args[4]);
+        BatchRunner.Options options = BatchRunner.Options.fromArgs(args, 5);
+
+        QuoteStatistics statistics = new BatchWorker(options).processShard(manifest, start, end, output);
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(statisticsFile))) {
+            statistics.writeTo(out);
+        }
+    }
+
+    /**
+     * Reads a byte range of a file channel without changing the channel position, so shards never overlap.
+     */
+    private static class ShardInputStream extends InputStream {
+        private final FileChannel channel;
+        private final ByteBuffer single = ByteBuffer.allocate(1);
+        private long position;
+        private final long end;
+
+        ShardInputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            single.clear();
+            return read(single.array(), 0, 1) == 1 ? single.get(0) & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            ByteBuffer target = ByteBuffer.wrap(b, off, (int) Math.min(len, end - position));
+            int read = channel.read(target, position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+    }
+}
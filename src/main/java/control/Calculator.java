@@ -1,9 +1,10 @@
 package control;
 
+import data.OffHeapQuoteStore;
+import data.PackageCostOptimizer;
 import data.Utils;
 import data.Packet;
 import data.ImportHandler;
-import gui.PackageCalculator;
 
 import java.util.List;
 
@@ -17,7 +18,7 @@ import java.util.List;
  * </p>
  * <p>
  * The class uses an {@link ImportHandler} to import shipping cost data from a CSV file, and the default shipping costs
- * are initialized with DHL. The shipping costs can be later set to Hermes using the {@code setShippingCost} method.
+ * are initialized with DHL. The file is imported once per application, by the first calculator. The shipping costs can be later set to Hermes using the {@code setShippingCost} method.
  * </p>
  * <p>
  * The class is designed to be used in a shipping cost calculation system, where it provides flexibility in choosing
@@ -28,7 +29,26 @@ import java.util.List;
 
 public class Calculator {
 
-    final ImportHandler importer = new ImportHandler("data/shippingCosts.csv");
+    /** Number of price tiers in {@link #shippingCosts}. */
+    public static final int TIER_COUNT = 5;
+
+    /** Tier index returned by {@link #classify(Packet)} for parcels that cannot be shipped. */
+    public static final int REJECTED = -1;
+
+    /**
+     * The price tier and the price of a quote.
+     */
+    public static class TierPrice {
+        public final int tier;
+        public final double price;
+
+        public TierPrice(int tier, double price) {
+            this.tier = tier;
+            this.price = price;
+        }
+    }
+
+    final ImportHandler importer;
 
     /**
      * shippingCosts is an ArrayList with the prices:
@@ -40,7 +60,23 @@ public class Calculator {
      * */
     private List<Double> shippingCosts;
 
+    private Utils.Company company = Utils.Company.DHL;
+
+    // optional statistics sink, null if nobody listens
+    private QuoteAggregator aggregator;
+
+    // optional audit journal, null if quotes are not journaled
+    private QuoteJournal journal;
+
     public Calculator(){
+        this(ImportHandler.getDefault());
+    }
+
+    /**
+     * @param importer the shipping costs to calculate with, can be shared by several calculators.
+     */
+    public Calculator(final ImportHandler importer){
+        this.importer = importer;
         this.shippingCosts = importer.getPriceDHL();
     }
 
@@ -54,6 +90,58 @@ public class Calculator {
             case HERMES -> this.shippingCosts = importer.getPriceHermes();
             case DHL -> this.shippingCosts = importer.getPriceDHL();
         }
+        this.company = company;
+    }
+
+    /**
+     * @return the version of the imported shipping costs, see {@link ImportHandler#getTariffVersion()}.
+     */
+    public long getTariffVersion() {
+        return importer.getTariffVersion();
+    }
+
+    public ImportHandler getTariff() {
+        return this.importer;
+    }
+
+    public Utils.Company getShippingChoice() {
+        return this.company;
+    }
+
+    /**
+     * Registers an aggregator that is fed with every quote and rejection of this calculator.
+     *
+     * @param aggregator the aggregator, or null to stop recording.
+     */
+    public void setAggregator(final QuoteAggregator aggregator) {
+        this.aggregator = aggregator;
+    }
+
+    public QuoteAggregator getAggregator() {
+        return this.aggregator;
+    }
+
+    /**
+     * Registers a journal that records every quote of this calculator together with the tariff version.
+     *
+     * @param journal the journal, or null to stop journaling.
+     */
+    public void setJournal(final QuoteJournal journal) {
+        this.journal = journal;
+    }
+
+    public QuoteJournal getJournal() {
+        return this.journal;
+    }
+
+    /**
+     * Returns the price of a tier for the current shipping provider, without any options applied.
+     *
+     * @param tier index into the shipping costs, see {@link #classify(Packet)}.
+     * @return the base price of the tier.
+     */
+    public double getTierPrice(final int tier) {
+        return shippingCosts.get(tier);
     }
 
     /**
@@ -65,31 +153,75 @@ public class Calculator {
      * @return The calculated shipping costs for the parcel.
      */
     public double calcShippingCosts(final Packet packet, final boolean express, final double vat) {
+        return price(packet, express, vat).price;
+    }
 
-        double cost = 0;
+    /**
+     * Prices a parcel as it is or with optimized packing, and returns the tier along with the price.
+     * Optimized quotes are base prices, express and vat are only applied to the others.
+     *
+     * @param packet The parcel object with attributes (length, width, height, weight).
+     * @param express boolean
+     * @param vat the vat to deduct.
+     * @param optimize search the cheapest rotation, see {@link PackageCostOptimizer}.
+     * @param quoteStore memoizes optimized quotes, or null.
+     * @return the tier and the price of the parcel.
+     * @throws IllegalArgumentException if the parcel cannot be shipped.
+     */
+    public TierPrice quote(final Packet packet, final boolean express, final double vat, final boolean optimize,
+                           final OffHeapQuoteStore quoteStore) {
+        if (optimize) {
+            PackageCostOptimizer pco = new PackageCostOptimizer(packet, this);
+            pco.setQuoteStore(quoteStore);
+            double costs = pco.optimizeCosts();
+            return new TierPrice(pco.getBestTier(), costs);
+        }
+        return price(packet, express, vat);
+    }
 
-        if (isSmall(packet)) {
-            cost = shippingCosts.get(0);
-        } else if (isMedium(packet)) {
-            cost = shippingCosts.get(1);
-        } else if (isLarge(packet)) {
-            // check for combinedDimensions and weight for the price
-            if(packet.combinedDimensions <= 3000 && packet.weight <= 10000) {
-                cost = packet.weight <= 5000 ? shippingCosts.get(2) : shippingCosts.get(3);
-            } else if (packet.weight <= 31500) {
-                cost = shippingCosts.get(4);
-            }
-            else{
-                String error = "Package dimensions exceed the maximum limits or invalid";
-                PackageCalculator.getInstance().messagesArea.setMessage(error);
-                throw new IllegalArgumentException(error);
-            }
-        } else {
+    private TierPrice price(final Packet packet, final boolean express, final double vat) {
+        QuoteEvent event = new QuoteEvent();
+        event.begin();
+        int tier = classify(packet);
+        if (tier == REJECTED) {
+            commit(event, tier);
             String error = "Package dimensions exceed the maximum limits or invalid";
-            PackageCalculator.getInstance().messagesArea.setMessage(error);
+            if (aggregator != null)
+                aggregator.recordRejection(error);
+            Messages.post(Messages.Severity.ERROR, error);
             throw new IllegalArgumentException(error);
         }
 
+        double cost = applyOptions(shippingCosts.get(tier), express, vat);
+
+        if (aggregator != null)
+            aggregator.recordQuote(company, tier, packet, cost);
+        if (journal != null)
+            journal.record(company, tier, packet, express, vat, false, cost, getTariffVersion());
+        commit(event, tier);
+
+        return new TierPrice(tier, cost);
+    }
+
+    private void commit(final QuoteEvent event, final int tier) {
+        event.end();
+        // false without a recording or below the threshold, then the fields are not even set
+        if (event.shouldCommit()) {
+            event.carrier = company.name();
+            event.tier = tier;
+            event.commit();
+        }
+    }
+
+    /**
+     * Applies the express surcharge and the vat reduction to a base price.
+     *
+     * @param cost the base price of a tier.
+     * @param express boolean
+     * @param vat the vat to deduct.
+     * @return the price with options applied.
+     */
+    public static double applyOptions(double cost, final boolean express, final double vat) {
         if (express){
             cost = cost *1.2;
         }
@@ -98,15 +230,48 @@ public class Calculator {
         return cost;
     }
 
-    private boolean isSmall(Packet packet){
-        return packet.length <= 300 && packet.width <= 300 && packet.height <= 150 && packet.weight <= 1000;
+    /**
+     * Determines the price tier of a parcel.
+     *
+     * @param packet The parcel object with attributes (length, width, height, weight).
+     * @return the index into the shipping costs (see {@link #shippingCosts}) or {@link #REJECTED}.
+     */
+    public int classify(final Packet packet) {
+        return classify(packet.length, packet.width, packet.height, packet.weight);
+    }
+
+    /**
+     * Determines the price tier of a parcel given by its raw measurements.
+     * Does not create a {@link Packet}, so it can be used for candidates that would fail its validation.
+     *
+     * @return the index into the shipping costs (see {@link #shippingCosts}) or {@link #REJECTED}.
+     */
+    public int classify(final int length, final int width, final int height, final int weight) {
+        if (isSmall(length, width, height, weight)) {
+            return 0;
+        } else if (isMedium(length, width, height, weight)) {
+            return 1;
+        } else if (isLarge(length, width, height)) {
+            // check for combinedDimensions and weight for the price
+            int combinedDimensions = length + 2*width + 2*height;
+            if(combinedDimensions <= 3000 && weight <= 10000) {
+                return weight <= 5000 ? 2 : 3;
+            } else if (weight <= 31500) {
+                return 4;
+            }
+        }
+        return REJECTED;
+    }
+
+    private boolean isSmall(int length, int width, int height, int weight){
+        return length <= 300 && width <= 300 && height <= 150 && weight <= 1000;
     }
 
-    private boolean isMedium(Packet packet){
-        return packet.length <= 600 && packet.width <= 300 && packet.height <= 150 && packet.weight <= 2000;
+    private boolean isMedium(int length, int width, int height, int weight){
+        return length <= 600 && width <= 300 && height <= 150 && weight <= 2000;
     }
 
-    private boolean isLarge(Packet packet){
-        return packet.length <= 1200 && packet.width <= 600 && packet.height <= 600;
+    private boolean isLarge(int length, int width, int height){
+        return length <= 1200 && width <= 600 && height <= 600;
     }
 }
@@ -0,0 +1,81 @@
+package control;
+
+import data.Packet;
+import data.Utils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The {@code Headless} class is the entry point for pricing without a GUI.
+ * <p>
+ * It prices a single parcel, or a whole manifest with the {@link BatchRunner}, and never references the
+ * {@code gui} package, so no JavaFX class is loaded. Together with a class data sharing archive
+ * (see the {@code cdsArchive} Gradle task) a short-lived pricing job starts in a fraction of the GUI startup time.
+ * </p>
+ */
+public class Headless {
+
+    /** System property with the class data sharing archive to pass on to batch worker JVMs. */
+    public static final String CDS_ARCHIVE_PROPERTY = "packagecalculator.cds";
+
+    /**
+     * Command line entry point.
+     * <p>
+     * Usage: {@code Headless <length> <width> <height> <weight> [--carrier DHL|HERMES] [--express] [--vat 0.19]
+     * [--optimize] [--journal dir]} or {@code Headless --batch <manifest> <output> [BatchRunner options]}
+     * </p>
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            BatchRunner.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length < 4) {
+            System.err.println("Usage: Headless <length> <width> <height> <weight> [--carrier DHL|HERMES] "
+                    + "[--express] [--vat 0.19] [--optimize] [--journal dir]");
+            System.err.println("       Headless --batch <manifest> <output> [BatchRunner options]");
+            System.exit(1);
+        }
+        Utils.Company company = Utils.Company.DHL;
+        boolean express = false;
+        double vat = 0;
+        boolean optimize = false;
+        Path journalDirectory = null;
+        for (int i = 4; i < args.length; i++) {
+            switch (args[i]) {
+                case "--carrier" -> company = Utils.Company.valueOf(args[++i].toUpperCase());
+                case "--express" -> express = true;
+                case "--vat" -> vat = Double.parseDouble(args[++i]);
+                case "--optimize" -> optimize = true;
+                case "--journal" -> journalDirectory = Path.of(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        QuoteJournal journal = journalDirectory == null ? null : new QuoteJournal(journalDirectory);
+        int exitCode = 0;
+        try {
+            Packet packet = new Packet(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+                    Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+            Calculator calculator = new Calculator();
+            calculator.setShippingChoice(company);
+            calculator.setJournal(journal);
+            Calculator.TierPrice quote = calculator.quote(packet, express, vat, optimize, null);
+            System.out.printf(Locale.ROOT, "%s;%d;%.2f%n", company, quote.tier, quote.price);
+        } catch (IllegalArgumentException | AssertionError e) {
+            System.err.println(e.getMessage());
+            exitCode = 2;
+        } finally {
+            if (journal != null) {
+                journal.close();
+            }
+        }
+        // only exit after the journal is written
+        if (exitCode != 0) {
+            System.exit(exitCode);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package control;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The {@code MessageLog} buffers messages between the threads that post them and the one that displays them.
+ * <p>
+ * Producers on any thread append to a bounded lock-free ring buffer and never block. If the consumer falls a whole
+ * ring behind, new messages are counted as dropped instead. The consumer drains all messages at once, e.g. once per
+ * frame, and equal consecutive messages are coalesced into one entry with a repeat count, so a flood of messages
+ * costs the display only one update with a few entries.
+ * </p>
+ */
+public class MessageLog implements Messages.Sink {
+
+    /**
+     * A logged message.
+     */
+    public static class Entry {
+        public final long timeMillis;
+        public final Messages.Severity severity;
+        public final String text;
+        // number of equal consecutive messages this entry stands for
+        public final int count;
+
+        public Entry(long timeMillis, Messages.Severity severity, String text, int count) {
+            this.timeMillis = timeMillis;
+            this.severity = severity;
+            this.text = text;
+            this.count = count;
+        }
+
+        /**
+         * @return true if the other entry has the same severity and text.
+         */
+        public boolean isRepeatedBy(Entry other) {
+            return severity == other.severity && text.equals(other.text);
+        }
+
+        /**
+         * @return this entry with the repetitions of the other entry added, at the time of the other.
+         */
+        public Entry coalesce(Entry other) {
+            return new Entry(other.timeMillis, severity, text, count + other.count);
+        }
+    }
+
+    private final int mask;
+    private final AtomicReferenceArray<Entry> slots;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    // only written by the consumer
+    private volatile long head;
+
+    /**
+     * @param capacity number of messages buffered between two drains, rounded up to a power of two.
+     */
+    public MessageLog(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+    }
+
+    @Override
+    public void accept(Messages.Severity severity, String text) {
+        add(severity, text);
+    }
+
+    /**
+     * Appends a message, from any thread.
+     *
+     * @return false if the buffer was full and the message was dropped.
+     */
+    public boolean add(Messages.Severity severity, String text) {
+        Entry entry = new Entry(System.currentTimeMillis(), severity, text, 1);
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head > mask) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+        // the slot was emptied by the consumer before it advanced the head past it
+        slots.lazySet((int) sequence & mask, entry);
+        return true;
+    }
+
+    /**
+     * Takes all messages published so far. Must only be called by one thread at a time.
+     *
+     * @return the messages in order, equal consecutive ones coalesced, followed by a warning if messages were
+     * dropped. Empty if there is nothing new.
+     */
+    public List<Entry> drain() {
+        List<Entry> entries = new ArrayList<>();
+        long next = head;
+        long end = tail.get();
+        while (next < end) {
+            int slot = (int) next & mask;
+            Entry entry = slots.get(slot);
+            if (entry == null) {
+                // claimed but not yet published, take it with the next drain
+                break;
+            }
+            slots.lazySet(slot, null);
+            next++;
+            int last = entries.size() - 1;
+            if (last >= 0 && entries.get(last).isRepeatedBy(entry)) {
+                entries.set(last, entries.get(last).coalesce(entry));
+            } else {
+                entries.add(entry);
+            }
+        }
+        head = next;
+
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            entries.add(new Entry(System.currentTimeMillis(), Messages.Severity.WARNING,
+                    lost + " messages dropped", 1));
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,60 @@
+package control;
+
+/**
+ * The {@code Messages} class passes user messages from the calculation to whoever displays them.
+ * <p>
+ * The GUI registers its message log as sink. Headless runs register nothing and messages are dropped, so the
+ * calculation never references, and therefore never loads, any JavaFX class. Messages can be posted from any
+ * thread, the sink has to cope with that.
+ * </p>
+ */
+public final class Messages {
+
+    /**
+     * How important a message is.
+     */
+    public enum Severity {
+        INFO, WARNING, ERROR
+    }
+
+    /**
+     * Receives the posted messages.
+     */
+    public interface Sink {
+        void accept(Severity severity, String text);
+    }
+
+    private static volatile Sink sink;
+
+    private Messages() {
+    }
+
+    /**
+     * @param sink receives all messages from now on, null to drop them.
+     */
+    public static void setSink(Sink sink) {
+        Messages.sink = sink;
+    }
+
+    /**
+     * Shows an informational message to the user, if there is one.
+     *
+     * @param text the message.
+     */
+    public static void post(String text) {
+        post(Severity.INFO, text);
+    }
+
+    /**
+     * Shows a message to the user, if there is one.
+     *
+     * @param severity the importance of the message.
+     * @param text the message.
+     */
+    public static void post(Severity severity, String text) {
+        Sink sink = Messages.sink;
+        if (sink != null) {
+            sink.accept(severity, text);
+        }
+    }
+}
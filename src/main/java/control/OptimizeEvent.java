@@ -0,0 +1,37 @@
+package control;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight recorder event of {@link data.PackageCostOptimizer#optimizeCosts()}.
+ * <p>
+ * Searches that take longer than the threshold are recorded, answers from the quote store evaluate no candidates.
+ * </p>
+ */
+@Name("packagecalculator.Optimize")
+@Label("Optimize Costs")
+@Category({"Package Calculator", "Pricing"})
+@Description("Search for the cheapest rotation of a parcel")
+@Threshold("10 ms")
+@StackTrace(false)
+public class OptimizeEvent extends jdk.jfr.Event {
+
+    @Label("Carrier")
+    public String carrier;
+
+    @Label("Candidates Evaluated")
+    @Description("Number of rotations classified")
+    public int candidates;
+
+    @Label("Best Rotation")
+    @Description("Rotation angles around x, y and z of the cheapest rotation, empty if none fits")
+    public String bestRotation;
+
+    @Label("Best Tier")
+    public int bestTier;
+}
@@ -0,0 +1,29 @@
+package control;
+
+/**
+ * A {@code Quote} is the answer of a {@link QuoteProcessor} to a {@link QuoteRequest}.
+ * If the parcel cannot be shipped, the tier is {@link Calculator#REJECTED}, the price is {@code NaN}
+ * and the error holds the reason.
+ */
+public class Quote {
+
+    public final QuoteRequest request;
+
+    public final int tier;
+
+    public final double price;
+
+    // null if the parcel could be priced
+    public final String error;
+
+    public Quote(QuoteRequest request, int tier, double price, String error) {
+        this.request = request;
+        this.tier = tier;
+        this.price = price;
+        this.error = error;
+    }
+
+    public boolean isRejected() {
+        return error != null;
+    }
+}
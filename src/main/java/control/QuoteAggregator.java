@@ -0,0 +1,61 @@
+package control;
+
+import data.Packet;
+import data.Utils;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The {@code QuoteAggregator} collects {@link QuoteStatistics} while parcels are priced.
+ * <p>
+ * Every pricing thread records into its own accumulator, so recording never contends with other pricing threads.
+ * {@link #snapshot()} merges the per-thread accumulators into one report, holding the lock of each accumulator
+ * while it is merged, so it can be taken while quotes are still running. The result is exact once all pricing
+ * threads are done; before, it contains every quote recorded up to the moment its thread was merged.
+ * </p>
+ * <p>
+ * An aggregator is attached to a {@link Calculator} with {@link Calculator#setAggregator(QuoteAggregator)}
+ * and may be shared between several calculators.
+ * </p>
+ */
+public class QuoteAggregator {
+
+    private final Queue<QuoteStatistics> accumulators = new ConcurrentLinkedQueue<>();
+
+    private final ThreadLocal<QuoteStatistics> local = ThreadLocal.withInitial(() -> {
+        QuoteStatistics statistics = new QuoteStatistics();
+        accumulators.add(statistics);
+        return statistics;
+    });
+
+    public void recordQuote(final Utils.Company company, final int tier, final Packet packet, final double cost) {
+        QuoteStatistics statistics = local.get();
+        // only contended while a snapshot merges this accumulator
+        synchronized (statistics) {
+            statistics.recordQuote(company, tier, packet, cost);
+        }
+    }
+
+    public void recordRejection(final String reason) {
+        QuoteStatistics statistics = local.get();
+        synchronized (statistics) {
+            statistics.recordRejection(reason);
+        }
+    }
+
+    /**
+     * Merges the accumulators of all threads, also while they are recording.
+     *
+     * @return a new instance containing the combined figures.
+     */
+    public QuoteStatistics snapshot() {
+        QuoteStatistics result = new QuoteStatistics();
+        for (QuoteStatistics statistics : accumulators) {
+            synchronized (statistics) {
+                result.merge(statistics);
+            }
+        }
+        return result;
+    }
+}
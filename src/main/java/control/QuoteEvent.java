@@ -0,0 +1,32 @@
+package control;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight recorder event of {@link Calculator#calcShippingCosts}.
+ * <p>
+ * A quote takes far less than the default threshold, so only unusually slow quotes are recorded unless the
+ * threshold is lowered in the recording settings. Without a recording, or with the event disabled, the event is
+ * never committed and costs nothing.
+ * </p>
+ */
+@Name("packagecalculator.Quote")
+@Label("Quote")
+@Category({"Package Calculator", "Pricing"})
+@Description("Shipping costs calculated for a parcel")
+@Threshold("1 ms")
+@StackTrace(false)
+public class QuoteEvent extends jdk.jfr.Event {
+
+    @Label("Carrier")
+    public String carrier;
+
+    @Label("Tier")
+    @Description("Price tier, -1 if the parcel was rejected")
+    public int tier;
+}
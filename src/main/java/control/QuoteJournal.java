@@ -0,0 +1,367 @@
+package control;
+
+import data.Packet;
+import data.Utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * The {@code QuoteJournal} is an append-only audit log of every quote, e.g. to settle billing disputes.
+ * <p>
+ * Pricing threads only claim a slot of a lock-free ring buffer and store the quote as six longs there.
+ * A background writer collects all published slots, writes them as one batch to the current segment file
+ * and syncs according to the {@link FsyncPolicy}. When a segment reaches its maximum size a new one is started.
+ * If the ring buffer is full, pricing threads wait for the writer, so no quote is ever lost. Once the journal is
+ * closed, recording throws, and every quote recorded before is written by {@link #close()}.
+ * </p>
+ * <p>
+ * A segment starts with a 16 byte header (magic, version, record size) followed by records of 48 bytes,
+ * six little endian longs: time in milliseconds, tariff version, price bits, {@code length << 32 | width},
+ * {@code height << 32 | weight} and {@code carrier | tier << 8 | flags << 16 | vat in basis points << 32}.
+ * Flag 1 marks express, flag 2 an optimized quote. See {@link #read(Path, Consumer)}.
+ * </p>
+ */
+public class QuoteJournal implements AutoCloseable {
+
+    /**
+     * When the writer forces written records to the storage device.
+     */
+    public enum FsyncPolicy {
+        // leave it to the operating system
+        NEVER,
+        // after every written batch
+        BATCH,
+        // at most once per interval
+        INTERVAL
+    }
+
+    /** Size of a journal record in bytes. */
+    public static final int RECORD_SIZE = 48;
+
+    private static final int MAGIC = 0x4a4e524c; // "JNRL"
+    private static final int VERSION = 1;
+    private static final int HEADER = 16;
+    private static final int LONGS = RECORD_SIZE / 8;
+
+    private static final int FLAG_EXPRESS = 1;
+    private static final int FLAG_OPTIMIZED = 2;
+
+    // set in claimed when the journal is closed, no sequence can be claimed afterwards
+    private static final long CLOSED = Long.MIN_VALUE;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNanos;
+
+    // ring buffer: slot i holds LONGS longs in data, published[i] is the sequence stored in it
+    private final int mask;
+    private final long[] data;
+    private final AtomicLongArray published;
+    // next sequence to claim, with the CLOSED bit
+    private final AtomicLong claimed = new AtomicLong();
+    // sequences below are free for reuse or written
+    private volatile long consumed;
+    private volatile long written;
+
+    private final Thread writer;
+    private volatile IOException failure;
+
+    private FileChannel segment;
+    private int segmentNumber;
+    private long segmentBytes;
+
+    /**
+     * Opens a journal with a ring of 65536 quotes, 64 MB segments and an fsync every second.
+     *
+     * @param directory the directory of the segment files.
+     * @throws IOException if the first segment cannot be created.
+     */
+    public QuoteJournal(Path directory) throws IOException {
+        this(directory, 1 << 16, 64L << 20, FsyncPolicy.INTERVAL, 1000);
+    }
+
+    /**
+     * @param directory the directory of the segment files, segments already in it are kept.
+     * @param ringCapacity number of quotes the ring buffer holds, rounded up to a power of two.
+     * @param segmentSize maximum size of a segment file in bytes.
+     * @param fsyncPolicy when to force written records to disk.
+     * @param fsyncIntervalMillis interval for {@link FsyncPolicy#INTERVAL}.
+     * @throws IOException if the first segment cannot be created.
+     */
+    public QuoteJournal(Path directory, int ringCapacity, long segmentSize, FsyncPolicy fsyncPolicy,
+                        long fsyncIntervalMillis) throws IOException {
+        int capacity = Integer.highestOneBit(Math.max(2, ringCapacity) * 2 - 1);
+        this.directory = directory;
+        this.segmentSize = Math.max(HEADER + RECORD_SIZE, segmentSize);
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalNanos = fsyncIntervalMillis * 1_000_000;
+        this.mask = capacity - 1;
+        this.data = new long[capacity * LONGS];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            segmentNumber = files.map(f -> f.getFileName().toString())
+                    .filter(name -> name.matches("quotes-\\d{8}\\.journal"))
+                    .mapToInt(name -> Integer.parseInt(name.substring(7, 15)))
+                    .max().orElse(0);
+        }
+        openSegment();
+
+        writer = new Thread(this::writeLoop, "quote-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Records a quote. Only blocks if the writer has fallen a whole ring behind.
+     * A claimed sequence is always published, so the writer never waits for a quote that does not come.
+     *
+     * @param company the shipping provider.
+     * @param tier the price tier.
+     * @param packet the priced parcel.
+     * @param express express shipment.
+     * @param vat the deducted vat.
+     * @param optimized whether the quote is the result of the optimizer.
+     * @param price the quoted price.
+     * @param tariffVersion the version of the shipping costs used.
+     * @throws IllegalStateException if the journal is closed or the writer failed.
+     * @throws IllegalArgumentException if the vat in basis points does not fit into 32 bits.
+     */
+    public void record(Utils.Company company, int tier, Packet packet, boolean express, double vat,
+                       boolean optimized, double price, long tariffVersion) {
+        // checked before a sequence is claimed, a claimed sequence must be published
+        long vatBasisPoints = Math.round(vat * 10000);
+        if (vatBasisPoints != (int) vatBasisPoints) {
+            throw new IllegalArgumentException("Vat out of range: " + vat);
+        }
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if ((sequence & CLOSED) != 0) {
+                throw new IllegalStateException("Quote journal is closed", failure);
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        while (sequence - consumed > mask) {
+            // ring is full, wait for the writer, it drains everything claimed before it stops
+            if (failure != null) {
+                throw new IllegalStateException("Quote journal failed", failure);
+            }
+            Thread.onSpinWait();
+        }
+        int slot = (int) sequence & mask;
+        int offset = slot * LONGS;
+        int flags = (express ? FLAG_EXPRESS : 0) | (optimized ? FLAG_OPTIMIZED : 0);
+        data[offset] = System.currentTimeMillis();
+        data[offset + 1] = tariffVersion;
+        data[offset + 2] = Double.doubleToRawLongBits(price);
+        data[offset + 3] = ((long) packet.length << 32) | (packet.width & 0xffffffffL);
+        data[offset + 4] = ((long) packet.height << 32) | (packet.weight & 0xffffffffL);
+        data[offset + 5] = company.ordinal() | (tier & 0xff) << 8 | flags << 16 | vatBasisPoints << 32;
+        published.lazySet(slot, sequence);
+    }
+
+    /**
+     * Waits until all quotes recorded so far are written to the segment file.
+     *
+     * @throws IOException if the writer failed.
+     */
+    public void flush() throws IOException {
+        long target = claimed.get() & ~CLOSED;
+        while (written < target && writer.isAlive()) {
+            LockSupport.parkNanos(100_000);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Writes all remaining quotes, forces them to disk and stops the writer.
+     *
+     * @throws IOException if the writer failed.
+     */
+    @Override
+    public void close() throws IOException {
+        claimed.getAndUpdate(sequence -> sequence | CLOSED);
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void writeLoop() {
+        ByteBuffer batch = ByteBuffer.allocateDirect((mask + 1) * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        long next = 0;
+        long lastSync = System.nanoTime();
+        boolean unsynced = false;
+        try {
+            while (true) {
+                // stop only after the ring is empty, so nothing recorded before close is lost
+                boolean stopping = (claimed.get() & CLOSED) != 0;
+
+                batch.clear();
+                long first = next;
+                while (published.get((int) next & mask) == next && batch.remaining() >= RECORD_SIZE) {
+                    int offset = ((int) next & mask) * LONGS;
+                    for (int i = 0; i < LONGS; i++) {
+                        batch.putLong(data[offset + i]);
+                    }
+                    next++;
+                }
+                // the records are copied, producers may reuse the slots
+                consumed = next;
+
+                if (next > first) {
+                    batch.flip();
+                    write(batch);
+                    written = next;
+                    unsynced = true;
+                }
+
+                long now = System.nanoTime();
+                if (unsynced && (fsyncPolicy == FsyncPolicy.BATCH || stopping
+                        || (fsyncPolicy == FsyncPolicy.INTERVAL && now - lastSync >= fsyncIntervalNanos))) {
+                    segment.force(false);
+                    lastSync = now;
+                    unsynced = false;
+                }
+
+                if (stopping && next == (claimed.get() & ~CLOSED)) {
+                    break;
+                }
+                if (next == first) {
+                    LockSupport.parkNanos(200_000);
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+            claimed.getAndUpdate(sequence -> sequence | CLOSED);
+        } finally {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+    }
+
+    private void write(ByteBuffer batch) throws IOException {
+        while (batch.hasRemaining()) {
+            long room = (segmentSize - segmentBytes) / RECORD_SIZE * RECORD_SIZE;
+            if (room == 0) {
+                segment.force(false);
+                segment.close();
+                openSegment();
+                continue;
+            }
+            ByteBuffer part = batch.slice();
+            part.limit((int) Math.min(part.remaining(), room));
+            while (part.hasRemaining()) {
+                segmentBytes += segment.write(part);
+            }
+            batch.position(batch.position() + part.limit());
+        }
+    }
+
+    private void openSegment() throws IOException {
+        segmentNumber++;
+        Path file = directory.resolve(String.format("quotes-%08d.journal", segmentNumber));
+        segment = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(0).flip();
+        while (header.hasRemaining()) {
+            segment.write(header);
+        }
+        segmentBytes = HEADER;
+    }
+
+    /**
+     * A quote read back from a journal segment.
+     */
+    public static class Entry {
+        public final long timeMillis;
+        public final long tariffVersion;
+        public final double price;
+        public final int length;
+        public final int width;
+        public final int height;
+        public final int weight;
+        public final Utils.Company company;
+        public final int tier;
+        public final boolean express;
+        public final boolean optimized;
+        public final double vat;
+
+        Entry(ByteBuffer record) {
+            timeMillis = record.getLong();
+            tariffVersion = record.getLong();
+            price = Double.longBitsToDouble(record.getLong());
+            long widthLength = record.getLong();
+            length = (int) (widthLength >>> 32);
+            width = (int) widthLength;
+            long heightWeight = record.getLong();
+            height = (int) (heightWeight >>> 32);
+            weight = (int) heightWeight;
+            long options = record.getLong();
+            company = Utils.Company.values()[(int) (options & 0xff)];
+            tier = (byte) (options >>> 8);
+            express = ((options >>> 16) & FLAG_EXPRESS) != 0;
+            optimized = ((options >>> 16) & FLAG_OPTIMIZED) != 0;
+            // signed, the vat may be negative
+            vat = (options >> 32) / 10000.0;
+        }
+    }
+
+    /**
+     * Reads all records of a segment file in the order they were written.
+     *
+     * @param segmentFile the segment to read.
+     * @param consumer receives every entry.
+     * @throws IOException if the file cannot be read or is not a journal segment.
+     */
+    public static void read(Path segmentFile, Consumer<Entry> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentFile, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 1024).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.limit(HEADER);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // read the header completely
+            }
+            buffer.flip();
+            if (buffer.remaining() < HEADER || buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                    || buffer.getInt() != RECORD_SIZE) {
+                throw new IOException("Not a quote journal segment: " + segmentFile);
+            }
+            buffer.clear();
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                while (buffer.remaining() >= RECORD_SIZE) {
+                    consumer.accept(new Entry(buffer));
+                }
+                buffer.compact();
+            }
+        }
+    }
+}
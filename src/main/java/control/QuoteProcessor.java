@@ -0,0 +1,328 @@
+package control;
+
+import data.OffHeapQuoteStore;
+import data.PackageCostOptimizer;
+import data.Utils;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@code QuoteProcessor} prices a stream of {@link QuoteRequest}s and publishes a {@link Quote} for each,
+ * in request order.
+ * <p>
+ * It only requests as many parcels from its upstream publisher as its subscriber has asked quotes for,
+ * bounded by {@code batchSize * (maxBatchesInFlight + 1)}. Incoming requests are collected into batches that
+ * are priced on the executor, never more than {@code maxBatchesInFlight} at the same time. A batch is handed over
+ * as soon as a slot is free, so a slow stream is priced one request at a time while a fast one is priced in full
+ * batches. Optimized requests close their batch, so the expensive rotation searches are spread over the executor.
+ * </p>
+ * <p>
+ * The processor accepts a single subscriber. No thread is ever blocked waiting for demand or results.
+ * </p>
+ */
+public class QuoteProcessor implements Flow.Processor<QuoteRequest, Quote> {
+
+    private final Executor executor;
+    private final int batchSize;
+    private final int maxBatchesInFlight;
+    private final Map<Utils.Company, Calculator> calculators = new EnumMap<>(Utils.Company.class);
+    private OffHeapQuoteStore quoteStore;
+
+    private Flow.Subscription upstream;
+    private Flow.Subscriber<? super Quote> downstream;
+    private boolean subscribed;
+
+    // quotes the subscriber asked for and has not received yet
+    private final AtomicLong demand = new AtomicLong();
+    // requested from upstream and not yet delivered downstream, only used by drain()
+    private long inPipeline;
+
+    // batch being collected, guarded by itself
+    private final List<QuoteRequest> pending = new ArrayList<>();
+    private int batchesInFlight;
+
+    // batches in request order, the head is delivered first
+    private final Queue<Batch> batches = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger wip = new AtomicInteger();
+    private volatile boolean upstreamDone;
+    private volatile Throwable upstreamError;
+    private volatile boolean cancelled;
+    private boolean terminated;
+
+    public QuoteProcessor() {
+        this(ForkJoinPool.commonPool(), 256, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param executor runs the pricing of the batches.
+     * @param batchSize maximum number of requests priced by one task.
+     * @param maxBatchesInFlight maximum number of batches handed to the executor at the same time.
+     */
+    public QuoteProcessor(Executor executor, int batchSize, int maxBatchesInFlight) {
+        this.executor = executor;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxBatchesInFlight = Math.max(1, maxBatchesInFlight);
+        for (Utils.Company company : Utils.Company.values()) {
+            Calculator calculator = new Calculator();
+            calculator.setShippingChoice(company);
+            calculators.put(company, calculator);
+        }
+    }
+
+    /**
+     * Sets a store to memoize optimized quotes, see {@link PackageCostOptimizer#setQuoteStore(OffHeapQuoteStore)}.
+     * Must be called before the first request arrives.
+     *
+     * @param quoteStore the store, or null.
+     */
+    public void setQuoteStore(OffHeapQuoteStore quoteStore) {
+        this.quoteStore = quoteStore;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Quote> subscriber) {
+        synchronized (this) {
+            if (subscribed) {
+                subscriber.onSubscribe(new Flow.Subscription() {
+                    public void request(long n) { }
+                    public void cancel() { }
+                });
+                subscriber.onError(new IllegalStateException("QuoteProcessor accepts only one subscriber"));
+                return;
+            }
+            subscribed = true;
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    upstreamError = new IllegalArgumentException("Requested " + n + " quotes, must be positive");
+                    upstreamDone = true;
+                    cancelUpstream();
+                } else {
+                    demand.getAndUpdate(d -> d + n < 0 ? Long.MAX_VALUE : d + n);
+                }
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                cancelUpstream();
+            }
+        });
+        // publish the subscriber only after onSubscribe returned, so onNext never overtakes it
+        synchronized (this) {
+            downstream = subscriber;
+        }
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        synchronized (this) {
+            if (upstream != null) {
+                subscription.cancel();
+                return;
+            }
+            upstream = subscription;
+        }
+        drain();
+    }
+
+    @Override
+    public void onNext(QuoteRequest request) {
+        boolean rejected = false;
+        synchronized (pending) {
+            pending.add(request);
+            rejected = !flush();
+        }
+        if (rejected) {
+            // no batch will finish to deliver the rejected quotes and the error
+            drain();
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        upstreamError = throwable;
+        onComplete();
+    }
+
+    @Override
+    public void onComplete() {
+        synchronized (pending) {
+            flush();
+        }
+        upstreamDone = true;
+        drain();
+    }
+
+    /**
+     * Hands pending requests to the executor while a slot is free. A batch takes at most {@code batchSize}
+     * requests and ends after an optimized one. Must be called while holding the lock on {@code pending}.
+     *
+     * @return false if the executor rejected a batch.
+     */
+    private boolean flush() {
+        while (!pending.isEmpty() && batchesInFlight < maxBatchesInFlight) {
+            int size = 1;
+            while (size < pending.size() && size < batchSize && !pending.get(size - 1).optimize) {
+                size++;
+            }
+            List<QuoteRequest> head = pending.subList(0, size);
+            Batch batch = new Batch(head.toArray(new QuoteRequest[0]));
+            head.clear();
+            batches.add(batch);
+            batchesInFlight++;
+            try {
+                executor.execute(batch);
+            } catch (RejectedExecutionException e) {
+                // answer the batch and the rest anyway, so the quotes before them can still be delivered in order
+                batch.reject(e);
+                batchesInFlight--;
+                if (!pending.isEmpty()) {
+                    Batch rest = new Batch(pending.toArray(new QuoteRequest[0]));
+                    pending.clear();
+                    rest.reject(e);
+                    batches.add(rest);
+                }
+                upstreamError = e;
+                upstreamDone = true;
+                cancelUpstream();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Delivers finished quotes and requests more parcels. Runs on whichever thread signals last,
+     * but never concurrently with itself.
+     */
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            Flow.Subscriber<? super Quote> subscriber;
+            Flow.Subscription subscription;
+            synchronized (this) {
+                subscriber = downstream;
+                subscription = upstream;
+            }
+            if (cancelled) {
+                batches.clear();
+            } else if (subscriber != null && !terminated) {
+                long requested = demand.get();
+                long emitted = 0;
+                Batch batch;
+                while ((batch = batches.peek()) != null && batch.done) {
+                    if (batch.next == batch.quotes.length) {
+                        batches.poll();
+                        continue;
+                    }
+                    if (emitted == requested) {
+                        break;
+                    }
+                    subscriber.onNext(batch.quotes[batch.next++]);
+                    emitted++;
+                }
+                if (emitted > 0) {
+                    inPipeline -= emitted;
+                    if (requested != Long.MAX_VALUE) {
+                        demand.addAndGet(-emitted);
+                    }
+                }
+
+                if (upstreamDone && batches.isEmpty()) {
+                    terminated = true;
+                    if (upstreamError != null) {
+                        subscriber.onError(upstreamError);
+                    } else {
+                        subscriber.onComplete();
+                    }
+                } else if (!upstreamDone && subscription != null) {
+                    long capacity = (long) batchSize * (maxBatchesInFlight + 1);
+                    long wanted = Math.min(demand.get(), capacity) - inPipeline;
+                    if (wanted > 0) {
+                        inPipeline += wanted;
+                        subscription.request(wanted);
+                    }
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void cancelUpstream() {
+        Flow.Subscription subscription;
+        synchronized (this) {
+            subscription = upstream;
+        }
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    private Quote price(QuoteRequest request) {
+        Calculator calculator = calculators.get(request.company);
+        try {
+            Calculator.TierPrice quote = calculator.quote(request.packet, request.express, request.vat,
+                    request.optimize, quoteStore);
+            return new Quote(request, quote.tier, quote.price, null);
+        } catch (RuntimeException e) {
+            return new Quote(request, Calculator.REJECTED, Double.NaN, e.getMessage());
+        }
+    }
+
+    /**
+     * A group of requests priced by one executor task.
+     */
+    private class Batch implements Runnable {
+        private final QuoteRequest[] requests;
+        private final Quote[] quotes;
+        // index of the next quote to deliver, only used by drain()
+        private int next;
+        private volatile boolean done;
+
+        Batch(QuoteRequest[] requests) {
+            this.requests = requests;
+            this.quotes = new Quote[requests.length];
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < requests.length; i++) {
+                quotes[i] = price(requests[i]);
+            }
+            // free the slot before this batch can be delivered, so the queue never looks empty while requests wait
+            synchronized (pending) {
+                batchesInFlight--;
+                flush();
+            }
+            done = true;
+            drain();
+        }
+
+        void reject(Exception e) {
+            for (int i = 0; i < requests.length; i++) {
+                quotes[i] = new Quote(requests[i], Calculator.REJECTED, Double.NaN, e.toString());
+            }
+            done = true;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package control;
+
+import data.Packet;
+import data.Utils;
+
+/**
+ * A {@code QuoteRequest} describes one parcel to be priced by a {@link QuoteProcessor}.
+ */
+public class QuoteRequest {
+
+    public final Packet packet;
+
+    public final Utils.Company company;
+
+    public final boolean express;
+
+    // vat to deduct, e.g. 0.19
+    public final double vat;
+
+    // optimized quotes ignore express and vat, like in the calculator area
+    public final boolean optimize;
+
+    public QuoteRequest(Packet packet, Utils.Company company, boolean express, double vat, boolean optimize) {
+        this.packet = packet;
+        this.company = company;
+        this.express = express;
+        this.vat = vat;
+        this.optimize = optimize;
+    }
+}
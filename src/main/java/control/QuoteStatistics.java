@@ -0,0 +1,228 @@
+package control;
+
+import data.Packet;
+import data.Utils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The {@code QuoteStatistics} class accumulates figures about priced parcels: tier hit counts and revenue
+ * per carrier and tier, weight and size histograms and the number of rejections per reason.
+ * <p>
+ * All figures are kept in fixed size arrays, so the memory footprint does not depend on the number of
+ * recorded quotes. An instance is not thread-safe; every thread records into its own instance
+ * (see {@link QuoteAggregator}, which guards them while merging) and the instances are combined with
+ * {@link #merge(QuoteStatistics)}.
+ * </p>
+ */
+public class QuoteStatistics {
+
+    /** Width of a weight histogram bucket in grams. */
+    public static final int WEIGHT_BUCKET = 1000;
+
+    /** Width of a size histogram bucket (length + 2*width + 2*height) in millimeters. */
+    public static final int SIZE_BUCKET = 200;
+
+    private static final int CARRIERS = Utils.Company.values().length;
+    private static final int WEIGHT_BUCKETS = 31500 / WEIGHT_BUCKET + 1;
+    private static final int SIZE_BUCKETS = (1200 + 2 * 600 + 2 * 600) / SIZE_BUCKET + 1;
+
+    private final long[][] tierCounts = new long[CARRIERS][Calculator.TIER_COUNT];
+    private final double[][] tierRevenue = new double[CARRIERS][Calculator.TIER_COUNT];
+    private final long[] weightHistogram = new long[WEIGHT_BUCKETS];
+    private final long[] sizeHistogram = new long[SIZE_BUCKETS];
+    private final Map<String, Long> rejections = new TreeMap<>();
+
+    /**
+     * Records a successfully priced parcel.
+     *
+     * @param company the shipping provider.
+     * @param tier the price tier, see {@link Calculator#classify(Packet)}.
+     * @param packet the priced parcel.
+     * @param cost the quoted price.
+     */
+    public void recordQuote(final Utils.Company company, final int tier, final Packet packet, final double cost) {
+        tierCounts[company.ordinal()][tier]++;
+        tierRevenue[company.ordinal()][tier] += cost;
+        weightHistogram[bucket(packet.weight, WEIGHT_BUCKET, WEIGHT_BUCKETS)]++;
+        sizeHistogram[bucket(packet.combinedDimensions, SIZE_BUCKET, SIZE_BUCKETS)]++;
+    }
+
+    /**
+     * Records a parcel that could not be priced.
+     *
+     * @param reason the error message of the rejection.
+     */
+    public void recordRejection(final String reason) {
+        rejections.merge(reason, 1L, Long::sum);
+    }
+
+    /**
+     * Adds all figures of another instance to this one.
+     *
+     * @param other the statistics to add.
+     * @return this instance.
+     */
+    public QuoteStatistics merge(final QuoteStatistics other) {
+        for (int c = 0; c < CARRIERS; c++) {
+            for (int t = 0; t < Calculator.TIER_COUNT; t++) {
+                tierCounts[c][t] += other.tierCounts[c][t];
+                tierRevenue[c][t] += other.tierRevenue[c][t];
+            }
+        }
+        for (int i = 0; i < WEIGHT_BUCKETS; i++) {
+            weightHistogram[i] += other.weightHistogram[i];
+        }
+        for (int i = 0; i < SIZE_BUCKETS; i++) {
+            sizeHistogram[i] += other.sizeHistogram[i];
+        }
+        other.rejections.forEach((reason, count) -> rejections.merge(reason, count, Long::sum));
+        return this;
+    }
+
+    public long getTierCount(final Utils.Company company, final int tier) {
+        return tierCounts[company.ordinal()][tier];
+    }
+
+    public double getTierRevenue(final Utils.Company company, final int tier) {
+        return tierRevenue[company.ordinal()][tier];
+    }
+
+    /**
+     * @return number of quotes over all carriers and tiers.
+     */
+    public long getQuoteCount() {
+        long count = 0;
+        for (long[] carrier : tierCounts) {
+            for (long tier : carrier) {
+                count += tier;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return number of rejections over all reasons.
+     */
+    public long getRejectionCount() {
+        long count = 0;
+        for (long reason : rejections.values()) {
+            count += reason;
+        }
+        return count;
+    }
+
+    /**
+     * @return the weight histogram, bucket i counts weights in [i*WEIGHT_BUCKET, (i+1)*WEIGHT_BUCKET).
+     */
+    public long[] getWeightHistogram() {
+        return weightHistogram.clone();
+    }
+
+    /**
+     * @return the size histogram, bucket i counts combined dimensions in [i*SIZE_BUCKET, (i+1)*SIZE_BUCKET).
+     */
+    public long[] getSizeHistogram() {
+        return sizeHistogram.clone();
+    }
+
+    public Map<String, Long> getRejections() {
+        return new TreeMap<>(rejections);
+    }
+
+    /**
+     * Writes all figures in a binary form, e.g. to hand them from a worker process to its coordinator.
+     *
+     * @param out the target.
+     * @throws IOException if writing fails.
+     */
+    public void writeTo(final DataOutput out) throws IOException {
+        for (int c = 0; c < CARRIERS; c++) {
+            for (int t = 0; t < Calculator.TIER_COUNT; t++) {
+                out.writeLong(tierCounts[c][t]);
+                out.writeDouble(tierRevenue[c][t]);
+            }
+        }
+        for (long count : weightHistogram) {
+            out.writeLong(count);
+        }
+        for (long count : sizeHistogram) {
+            out.writeLong(count);
+        }
+        out.writeInt(rejections.size());
+        for (Map.Entry<String, Long> entry : rejections.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeLong(entry.getValue());
+        }
+    }
+
+    /**
+     * Reads figures written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in the source.
+     * @return the statistics read.
+     * @throws IOException if reading fails.
+     */
+    public static QuoteStatistics readFrom(final DataInput in) throws IOException {
+        QuoteStatistics statistics = new QuoteStatistics();
+        for (int c = 0; c < CARRIERS; c++) {
+            for (int t = 0; t < Calculator.TIER_COUNT; t++) {
+                statistics.tierCounts[c][t] = in.readLong();
+                statistics.tierRevenue[c][t] = in.readDouble();
+            }
+        }
+        for (int i = 0; i < WEIGHT_BUCKETS; i++) {
+            statistics.weightHistogram[i] = in.readLong();
+        }
+        for (int i = 0; i < SIZE_BUCKETS; i++) {
+            statistics.sizeHistogram[i] = in.readLong();
+        }
+        int reasons = in.readInt();
+        for (int i = 0; i < reasons; i++) {
+            statistics.rejections.put(in.readUTF(), in.readLong());
+        }
+        return statistics;
+    }
+
+    /**
+     * Formats the statistics as a plain text report.
+     *
+     * @return the report.
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Quotes: ").append(getQuoteCount())
+                .append(", rejected: ").append(getRejectionCount()).append('\n');
+        for (Utils.Company company : Utils.Company.values()) {
+            for (int t = 0; t < Calculator.TIER_COUNT; t++) {
+                long count = tierCounts[company.ordinal()][t];
+                if (count > 0) {
+                    sb.append(String.format("%-6s tier %d: %10d quotes %14.2f revenue%n",
+                            company, t, count, tierRevenue[company.ordinal()][t]));
+                }
+            }
+        }
+        appendHistogram(sb, "Weight [g]", weightHistogram, WEIGHT_BUCKET);
+        appendHistogram(sb, "Size [mm]", sizeHistogram, SIZE_BUCKET);
+        rejections.forEach((reason, count) ->
+                sb.append("Rejected ").append(count).append("x: ").append(reason).append('\n'));
+        return sb.toString();
+    }
+
+    private static void appendHistogram(StringBuilder sb, String title, long[] histogram, int bucketWidth) {
+        sb.append(title).append(":\n");
+        for (int i = 0; i < histogram.length; i++) {
+            if (histogram[i] > 0) {
+                sb.append(String.format("  %6d - %6d: %10d%n", i * bucketWidth, (i + 1) * bucketWidth - 1, histogram[i]));
+            }
+        }
+    }
+
+    private static int bucket(int value, int width, int buckets) {
+        return Math.min(Math.max(value, 0) / width, buckets - 1);
+    }
+}
@@ -0,0 +1,31 @@
+package control;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of importing the shipping costs by {@link data.ImportHandler}.
+ */
+@Name("packagecalculator.TariffLoad")
+@Label("Tariff Load")
+@Category({"Package Calculator", "Tariff"})
+@Description("Shipping costs imported from a file")
+@StackTrace(false)
+public class TariffLoadEvent extends jdk.jfr.Event {
+
+    @Label("File")
+    public String file;
+
+    @Label("Rows")
+    @Description("Number of lines read")
+    public int rows;
+
+    @Label("Prices")
+    public int prices;
+
+    @Label("Tariff Version")
+    public long tariffVersion;
+}
@@ -1,14 +1,33 @@
 package data;
 
+import control.TariffLoadEvent;
+
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.zip.CRC32;
 
 public class ImportHandler {
 
     private final String path;
     private final List<Double> dhlPrices;
     private final List<Double> hermesPrices;
+    private long tariffVersion;
+
+    // loaded on first use, by the class loader, exactly once
+    private static class DefaultTariff {
+        static final ImportHandler INSTANCE = new ImportHandler("data/shippingCosts.csv");
+    }
+
+    /**
+     * Returns the shipping costs of the application, imported on the first call and shared afterwards.
+     *
+     * @return the default shipping costs.
+     */
+    public static ImportHandler getDefault() {
+        return DefaultTariff.INSTANCE;
+    }
 
     public ImportHandler(String path){
         this.path = System.getProperty("user.dir") + "/src/main/java/"+path;
@@ -17,11 +36,45 @@ public class ImportHandler {
         this.importShippingCosts();
     }
 
+    /**
+     * Imports the shipping costs from a file outside of the sources, e.g. a new tariff.
+     *
+     * @param file the CSV file.
+     */
+    public ImportHandler(Path file){
+        this.path = file.toString();
+        this.dhlPrices = new ArrayList<>();
+        this.hermesPrices = new ArrayList<>();
+        this.importShippingCosts();
+    }
+
+    /**
+     * Creates shipping costs from known prices, e.g. the ones a project file was priced with.
+     *
+     * @param tariffVersion the version of the prices, see {@link #getTariffVersion()}.
+     * @param dhlPrices the DHL prices per tier.
+     * @param hermesPrices the Hermes prices per tier.
+     */
+    public ImportHandler(long tariffVersion, List<Double> dhlPrices, List<Double> hermesPrices){
+        this.path = null;
+        this.dhlPrices = new ArrayList<>(dhlPrices);
+        this.hermesPrices = new ArrayList<>(hermesPrices);
+        this.tariffVersion = tariffVersion;
+    }
+
     private void importShippingCosts() {
         System.out.println("Importing shipping costs...");
+        TariffLoadEvent event = new TariffLoadEvent();
+        event.begin();
+        int rows = 0;
         try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(this.path), StandardCharsets.UTF_8))) {
             String line = br.readLine();
             if (line != null) {
+                rows++;
+                CRC32 crc = new CRC32();
+                crc.update(line.getBytes(StandardCharsets.UTF_8));
+                this.tariffVersion = crc.getValue();
+
                 String[] tokens = line.split(";");
 
                 System.out.println(Arrays.toString(tokens));
@@ -37,6 +90,14 @@ public class ImportHandler {
         } catch (IOException e) {
             e.printStackTrace();
         }
+        event.end();
+        if (event.shouldCommit()) {
+            event.file = this.path;
+            event.rows = rows;
+            event.prices = this.dhlPrices.size() + this.hermesPrices.size();
+            event.tariffVersion = this.tariffVersion;
+            event.commit();
+        }
     }
 
 
@@ -47,4 +108,13 @@ public class ImportHandler {
     public List<Double> getPriceDHL() {
         return this.dhlPrices;
     }
+
+    /**
+     * Identifies the imported prices, so results computed with other prices can be detected.
+     *
+     * @return a checksum of the imported price line.
+     */
+    public long getTariffVersion() {
+        return this.tariffVersion;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,240 @@
+package data;
+
+import control.Calculator;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The {@code OffHeapQuoteStore} memoizes quotes outside of the Java heap.
+ * <p>
+ * It is an open addressing hash table with linear probing in a single {@link ByteBuffer}. Keys are the packed
+ * primitive measurements of a parcel (see {@link #key(Utils.Company, boolean, int, int, int, int)}), values are the
+ * price tier and the base price without options. Each slot takes 16 bytes, so tens of millions of quotes fit
+ * into a few hundred megabytes without creating any objects.
+ * </p>
+ * <p>
+ * The table is either allocated directly or mapped from a file with {@link #open(Path, int, long)}, in which
+ * case a warm cache survives restarts. The capacity is fixed; {@link #put(long, int, double)} refuses new keys
+ * once the table is 75% full. Lookups are lock-free and may run concurrently with one another and with puts.
+ * </p>
+ */
+public class OffHeapQuoteStore implements AutoCloseable {
+
+    private static final int MAGIC = 0x51554f54; // "QUOT"
+    private static final int VERSION = 1;
+
+    // header: magic, version, capacity, size, tariff version
+    private static final int HEADER = 32;
+    private static final int SLOT = 16;
+
+    private static final long OCCUPIED = 1L << 63;
+    private static final long KEY_MASK = (1L << 49) - 1;
+    private static final int TIER_SHIFT = 52;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final ByteBuffer buffer;
+    private final FileChannel channel;
+    private final int capacity;
+    private final int maxSize;
+    private int size;
+
+    private OffHeapQuoteStore(ByteBuffer buffer, FileChannel channel, int capacity) {
+        this.buffer = buffer.order(ByteOrder.nativeOrder());
+        this.channel = channel;
+        this.capacity = capacity;
+        this.maxSize = (int) (capacity * 0.75);
+    }
+
+    /**
+     * Allocates an empty store in direct memory.
+     *
+     * @param expectedEntries the number of quotes the store has to hold.
+     * @return the store.
+     */
+    public static OffHeapQuoteStore allocate(int expectedEntries) {
+        int capacity = capacityFor(expectedEntries);
+        OffHeapQuoteStore store = new OffHeapQuoteStore(
+                ByteBuffer.allocateDirect(HEADER + capacity * SLOT), null, capacity);
+        store.writeHeader(0);
+        return store;
+    }
+
+    /**
+     * Opens a store backed by a memory-mapped file, creating it if necessary.
+     * The existing content is discarded if it was created with another tariff version or capacity.
+     *
+     * @param file the backing file.
+     * @param expectedEntries the number of quotes the store has to hold.
+     * @param tariffVersion the version of the shipping costs the quotes are computed with.
+     * @return the store.
+     * @throws IOException if the file cannot be mapped.
+     */
+    public static OffHeapQuoteStore open(Path file, int expectedEntries, long tariffVersion) throws IOException {
+        int capacity = capacityFor(expectedEntries);
+        long length = HEADER + (long) capacity * SLOT;
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            boolean valid = channel.size() == length;
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            OffHeapQuoteStore store = new OffHeapQuoteStore(mapped, channel, capacity);
+            ByteBuffer header = store.buffer;
+            valid = valid && header.getInt(0) == MAGIC && header.getInt(4) == VERSION
+                    && header.getLong(8) == capacity && header.getLong(24) == tariffVersion;
+            if (valid) {
+                store.size = (int) header.getLong(16);
+            } else {
+                for (int i = 0; i < capacity; i++) {
+                    LONGS.set(store.buffer, HEADER + i * SLOT, 0L);
+                }
+                header.putLong(24, tariffVersion);
+                store.writeHeader(0);
+            }
+            return store;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Packs the inputs of a quote into a key.
+     *
+     * @param company the shipping provider.
+     * @param optimized whether the quote is the result of a {@link PackageCostOptimizer}.
+     * @return the key, uses the lower 49 bits.
+     */
+    public static long key(Utils.Company company, boolean optimized, int length, int width, int height, int weight) {
+        return ((long) company.ordinal() << 47)
+                | ((optimized ? 1L : 0L) << 46)
+                | ((long) (length & 0x7ff) << 35)
+                | ((long) (width & 0x3ff) << 25)
+                | ((long) (height & 0x3ff) << 15)
+                | (weight & 0x7fff);
+    }
+
+    public static long key(Utils.Company company, boolean optimized, Packet packet) {
+        return key(company, optimized, packet.length, packet.width, packet.height, packet.weight);
+    }
+
+    /**
+     * @param key a key created by {@link #key(Utils.Company, boolean, Packet)}.
+     * @return the stored base price, or {@code NaN} if the key is not present.
+     */
+    public double get(long key) {
+        int slot = find(key);
+        return slot < 0 ? Double.NaN : Double.longBitsToDouble((long) LONGS.getAcquire(buffer, slot + 8));
+    }
+
+    /**
+     * @param key a key created by {@link #key(Utils.Company, boolean, Packet)}.
+     * @return the stored price tier, or {@link Calculator#REJECTED} if the key is not present.
+     */
+    public int getTier(long key) {
+        int slot = find(key);
+        return slot < 0 ? Calculator.REJECTED : (int) (((long) LONGS.getAcquire(buffer, slot) >>> TIER_SHIFT) & 0xf);
+    }
+
+    /**
+     * Stores a quote. An existing entry for the key is overwritten.
+     *
+     * @param key a key created by {@link #key(Utils.Company, boolean, Packet)}.
+     * @param tier the price tier of the quote.
+     * @param price the base price of the quote.
+     * @return false if the store is full and the key could not be added.
+     */
+    public synchronized boolean put(long key, int tier, double price) {
+        int mask = capacity - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            int slot = HEADER + i * SLOT;
+            long word = (long) LONGS.getAcquire(buffer, slot);
+            if (word == 0) {
+                if (size >= maxSize) {
+                    return false;
+                }
+                size++;
+                buffer.putLong(16, size);
+            } else if ((word & KEY_MASK) != key) {
+                continue;
+            }
+            // publish the price before the key, so lock-free readers never see a key without its price
+            LONGS.setRelease(buffer, slot + 8, Double.doubleToRawLongBits(price));
+            LONGS.setRelease(buffer, slot, OCCUPIED | ((long) tier << TIER_SHIFT) | key);
+            return true;
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Writes the content of a file backed store to disk.
+     */
+    public void force() {
+        if (buffer instanceof MappedByteBuffer mapped) {
+            mapped.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private int find(long key) {
+        int mask = capacity - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            int slot = HEADER + i * SLOT;
+            long word = (long) LONGS.getAcquire(buffer, slot);
+            if (word == 0) {
+                return -1;
+            }
+            if ((word & KEY_MASK) == key) {
+                return slot;
+            }
+        }
+    }
+
+    private void writeHeader(int size) {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(8, capacity);
+        buffer.putLong(16, size);
+        this.size = size;
+    }
+
+    private static int hash(long key) {
+        // murmur3 finalizer
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private static int capacityFor(int expectedEntries) {
+        long capacity = Long.highestOneBit(Math.max(16, (long) (expectedEntries / 0.75) + 1) * 2 - 1);
+        if (HEADER + capacity * SLOT > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many entries for one store: " + expectedEntries);
+        }
+        return (int) capacity;
+    }
+}
@@ -1,41 +1,160 @@
 package data;
 
 import control.Calculator;
-import gui.PackageCalculator;
+import control.Messages;
+import control.OptimizeEvent;
+import control.QuoteAggregator;
+import control.QuoteJournal;
 import org.apache.commons.math3.geometry.euclidean.threed.Rotation;
 import org.apache.commons.math3.geometry.euclidean.threed.RotationConvention;
 import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 
 /**
  * This function calculates if possible a rotation, so that a package fits into another package
  * */
 public class PackageCostOptimizer {
 
+    /**
+     * Receives the best rotation found so far while {@link #optimizeCosts()} searches.
+     */
+    public interface SearchProgress {
+        /**
+         * @param bestTier the tier of the best rotation so far, {@link Calculator#REJECTED} if none fits yet.
+         * @param bestCosts the price of the best rotation so far.
+         * @param done the searched fraction of all rotations.
+         * @return false to cancel the search.
+         */
+        boolean update(int bestTier, double bestCosts, double done);
+    }
+
     private final Vector3D xAxis = new Vector3D(1, 0, 0);
     private final Vector3D yAxis = new Vector3D(0, 1, 0);
     private final Vector3D zAxis = new Vector3D(0, 0, 1);
-    private final Calculator calculator = new Calculator();
+    private final Calculator calculator;
 
     private final ArrayList<Vector3D> startMeasurements = new ArrayList<>(3);
+    private final Packet packet;
     private int weight;
+    private int bestTier = Calculator.REJECTED;
+    private OffHeapQuoteStore quoteStore;
+    private SearchProgress progress;
+    // previews post no messages
+    private boolean preview;
+    // of the last search, for the flight recorder
+    private int candidates;
+    private Vector3D bestRotation;
 
     public PackageCostOptimizer(Packet packet) {
+        this(packet, new Calculator());
+    }
+
+    /**
+     * @param packet the parcel to optimize.
+     * @param calculator the calculator to price the rotations with, determines the shipping provider.
+     */
+    public PackageCostOptimizer(Packet packet, Calculator calculator) {
+        this.calculator = calculator;
+        this.packet = packet;
         startMeasurements.add(new Vector3D(packet.length, 0, 0));
         startMeasurements.add(new Vector3D(0, packet.width, 0));
         startMeasurements.add(new Vector3D(0, 0, packet.height));
         weight = packet.weight;
     }
 
+    /**
+     * Sets a store to look up and memoize optimized quotes, so the rotation search runs once per parcel.
+     *
+     * @param quoteStore the store, or null to always search.
+     */
+    public void setQuoteStore(OffHeapQuoteStore quoteStore) {
+        this.quoteStore = quoteStore;
+    }
+
+    /**
+     * Sets a listener for intermediate results, e.g. to show them while the search is running.
+     *
+     * @param progress the listener, or null.
+     */
+    public void setProgress(SearchProgress progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Marks the search as a preview, e.g. while typing, so it posts neither the best rotation nor errors.
+     *
+     * @param preview true for a preview.
+     */
+    public void setPreview(boolean preview) {
+        this.preview = preview;
+    }
+
+    /**
+     * Searches the cheapest rotation of the parcel.
+     *
+     * @return the price of the cheapest rotation.
+     * @throws IllegalArgumentException if no rotation can be shipped.
+     * @throws CancellationException if the {@link SearchProgress} cancelled the search.
+     */
     public double optimizeCosts() {
+        OptimizeEvent event = new OptimizeEvent();
+        event.begin();
+        candidates = 0;
+        bestRotation = null;
+
+        long key = OffHeapQuoteStore.key(calculator.getShippingChoice(), true, packet);
+        double minCosts = quoteStore == null ? Double.NaN : quoteStore.get(key);
+        if (!Double.isNaN(minCosts)) {
+            bestTier = quoteStore.getTier(key);
+        } else {
+            minCosts = searchBestRotation();
+            if (quoteStore != null && bestTier != Calculator.REJECTED) {
+                quoteStore.put(key, bestTier, minCosts);
+            }
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.carrier = calculator.getShippingChoice().name();
+            event.candidates = candidates;
+            event.bestRotation = bestRotation == null ? "" : bestRotation.toString();
+            event.bestTier = bestTier;
+            event.commit();
+        }
+
+        QuoteAggregator aggregator = calculator.getAggregator();
+        if (bestTier == Calculator.REJECTED) {
+            String error = "Package dimensions exceed the maximum limits or invalid";
+            if (aggregator != null)
+                aggregator.recordRejection(error);
+            if (!preview)
+                Messages.post(Messages.Severity.ERROR, error);
+            throw new IllegalArgumentException(error);
+        }
+        if (aggregator != null)
+            aggregator.recordQuote(calculator.getShippingChoice(), bestTier, packet, minCosts);
+        QuoteJournal journal = calculator.getJournal();
+        if (journal != null)
+            // optimized quotes are base prices, no options are applied
+            journal.record(calculator.getShippingChoice(), bestTier, packet, false, 0, true, minCosts,
+                    calculator.getTariffVersion());
+        return minCosts;
+    }
+
+    private double searchBestRotation() {
         final double degreesToRotate = 2 * Math.PI;
         final double steps = 20;
         double minCosts = Double.MAX_VALUE;
-        Vector3D bestRotation = new Vector3D(0, 0, 0);
+        bestTier = Calculator.REJECTED;
 
+        int xSteps = 0;
         for (double x = 0; x < degreesToRotate; x += degreesToRotate / steps) {
+            if (progress != null && !progress.update(bestTier, minCosts, Math.min(1, xSteps++ / steps))) {
+                throw new CancellationException("Optimization cancelled");
+            }
             ArrayList<Vector3D> xRotatedMeasurements = rotateAroundAxis(xAxis, x, startMeasurements);
             for (double y = 0; y < degreesToRotate; y += degreesToRotate / steps) {
                 ArrayList<Vector3D> yRotatedMeasurements = rotateAroundAxis(yAxis, y, xRotatedMeasurements);
@@ -43,25 +162,37 @@ public class PackageCostOptimizer {
                     ArrayList<Vector3D> zRotatedMeasurements = rotateAroundAxis(zAxis, z, yRotatedMeasurements);
 
                     ArrayList<Double> dimensions = calculatePackageDimensions(zRotatedMeasurements);
+                    candidates++;
 
-                    double costs = calculator.calcShippingCosts(new Packet(
+                    // classify directly, rotations that do not fit are skipped instead of aborting the search
+                    int tier = calculator.classify(
                             (int) (Math.ceil(dimensions.get(0))),
                             (int) (Math.ceil(dimensions.get(1))),
-                            (int) (Math.ceil(dimensions.get(2))), weight),
-                            false,
-                            0
-                    );
+                            (int) (Math.ceil(dimensions.get(2))), weight);
+                    if (tier == Calculator.REJECTED) {
+                        continue;
+                    }
+                    double costs = calculator.getTierPrice(tier);
                     if (costs < minCosts) {
                         minCosts = costs;
                         bestRotation = new Vector3D(x, y, z);
+                        bestTier = tier;
                     }
                 }
             }
         }
-        PackageCalculator.getInstance().messagesArea.setMessage("Best rotation: " + bestRotation);
+        if (bestTier != Calculator.REJECTED && !preview)
+            Messages.post("Best rotation: " + bestRotation);
         return minCosts;
     }
 
+    /**
+     * @return the price tier of the best rotation found by the last {@link #optimizeCosts()} call.
+     */
+    public int getBestTier() {
+        return bestTier;
+    }
+
     private ArrayList<Vector3D> rotateAroundAxis(Vector3D axis, double degrees, ArrayList<Vector3D> measurements) {
         Rotation rotation = new Rotation(axis, degrees, RotationConvention.VECTOR_OPERATOR);
         ArrayList<Vector3D> rotatedMeasurements = new ArrayList<>(3);
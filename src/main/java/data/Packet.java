@@ -1,6 +1,6 @@
 package data;
 
-import gui.PackageCalculator;
+import control.Messages;
 
 public class Packet {
 
@@ -28,22 +28,19 @@ public class Packet {
 		// calculate the size of the packet
 		if (width <0 || height <0 || weight < 0|| length < 0){
 			String error = "Dimensions must be greater than 0.";
-			if (PackageCalculator.getInstance() != null)
-				PackageCalculator.getInstance().messagesArea.setMessage(error);
+			Messages.post(Messages.Severity.ERROR, error);
 			throw new AssertionError(error);
 		}
 
 		if (weight > 31500){
 			String error = "Weight must be less than 31500.";
-			if (PackageCalculator.getInstance() != null)
-				PackageCalculator.getInstance().messagesArea.setMessage(error);
+			Messages.post(Messages.Severity.ERROR, error);
 			throw new AssertionError(error);
 		}
 
 		if (length > 1200 || width > 600 || height > 600){
 			String error = "Wrong dimensions";
-			if (PackageCalculator.getInstance() != null)
-				PackageCalculator.getInstance().messagesArea.setMessage(error);
+			Messages.post(Messages.Severity.ERROR, error);
 			throw new AssertionError(error);
 		}
 
@@ -0,0 +1,298 @@
+package data;
+
+import control.Calculator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * The {@code PacketTable} holds many priced parcels in columns of primitives instead of one object per parcel.
+ * <p>
+ * Each column is a buffer, so a table costs 26 bytes per parcel and can be backed by heap arrays as well as by
+ * a memory-mapped file. Rows are addressed by their index. A row that could not be priced has the tier
+ * {@link Calculator#REJECTED} and the price {@code NaN}, a row that has not been priced yet the tier
+ * {@link #UNPRICED}.
+ * </p>
+ * <p>
+ * Quotes may be set and read by different threads: the price is published before the tier, so a thread that sees
+ * the tier of a priced row also sees its price.
+ * </p>
+ */
+public class PacketTable {
+
+    /**
+     * The columns a table can be sorted by.
+     */
+    public enum Column {
+        LENGTH, WIDTH, HEIGHT, WEIGHT, CARRIER, TIER, PRICE
+    }
+
+    /** Tier of a row that has not been priced yet. */
+    public static final int UNPRICED = -2;
+
+    private IntBuffer lengths;
+    private IntBuffer widths;
+    private IntBuffer heights;
+    private IntBuffer weights;
+    private ByteBuffer companies;
+    private ByteBuffer tiers;
+    private DoubleBuffer prices;
+    private int size;
+
+    public PacketTable() {
+        this(1024);
+    }
+
+    public PacketTable(int capacity) {
+        allocate(Math.max(16, capacity));
+    }
+
+    /**
+     * Creates a table over existing columns, e.g. views of a mapped file. All columns must have the same limit.
+     */
+    public PacketTable(IntBuffer lengths, IntBuffer widths, IntBuffer heights, IntBuffer weights,
+                       ByteBuffer companies, ByteBuffer tiers, DoubleBuffer prices) {
+        this.lengths = lengths;
+        this.widths = widths;
+        this.heights = heights;
+        this.weights = weights;
+        this.companies = companies;
+        this.tiers = tiers;
+        this.prices = prices;
+        this.size = lengths.limit();
+    }
+
+    /**
+     * Appends a row.
+     *
+     * @param tier the price tier, {@link Calculator#REJECTED} or {@link #UNPRICED}.
+     * @param price the price, {@code NaN} if not priced.
+     * @return the index of the new row.
+     */
+    public int add(int length, int width, int height, int weight, Utils.Company company, int tier, double price) {
+        if (size == lengths.capacity()) {
+            grow();
+        }
+        lengths.put(size, length);
+        widths.put(size, width);
+        heights.put(size, height);
+        weights.put(size, weight);
+        companies.put(size, (byte) company.ordinal());
+        tiers.put(size, (byte) tier);
+        prices.put(size, price);
+        return size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getLength(int row) {
+        return lengths.get(row);
+    }
+
+    public int getWidth(int row) {
+        return widths.get(row);
+    }
+
+    public int getHeight(int row) {
+        return heights.get(row);
+    }
+
+    public int getWeight(int row) {
+        return weights.get(row);
+    }
+
+    public Utils.Company getCompany(int row) {
+        return Utils.Company.values()[companies.get(row)];
+    }
+
+    public int getTier(int row) {
+        return tiers.get(row);
+    }
+
+    /**
+     * @return the price of the row, at least as new as the tier read before by this thread.
+     */
+    public double getPrice(int row) {
+        VarHandle.acquireFence();
+        return prices.get(row);
+    }
+
+    /**
+     * Stores the result of pricing a row, from any thread.
+     */
+    public void setQuote(int row, int tier, double price) {
+        prices.put(row, price);
+        // readers check the tier first, so it must not become visible before the price
+        VarHandle.releaseFence();
+        tiers.put(row, (byte) tier);
+    }
+
+    /**
+     * @return a table of the same parcels without quotes, sharing the measurement and carrier columns.
+     */
+    public PacketTable withoutQuotes() {
+        ByteBuffer unpriced = ByteBuffer.allocate(size);
+        DoubleBuffer noPrices = DoubleBuffer.allocate(size);
+        for (int row = 0; row < size; row++) {
+            unpriced.put(row, (byte) UNPRICED);
+            noPrices.put(row, Double.NaN);
+        }
+        return new PacketTable(lengths(), widths(), heights(), weights(), companies(), unpriced, noPrices);
+    }
+
+    // column access for the project file
+    IntBuffer lengths() { return lengths.duplicate().limit(size); }
+    IntBuffer widths() { return widths.duplicate().limit(size); }
+    IntBuffer heights() { return heights.duplicate().limit(size); }
+    IntBuffer weights() { return weights.duplicate().limit(size); }
+    ByteBuffer companies() { return companies.duplicate().limit(size); }
+    ByteBuffer tiers() { return tiers.duplicate().limit(size); }
+    DoubleBuffer prices() { return prices.duplicate().limit(size); }
+
+    /**
+     * Sorts the row indices by one column. Runs in O(n log n) on primitives, without boxing the rows.
+     *
+     * @param column the column to sort by.
+     * @param ascending the sort direction.
+     * @return the row indices in sort order, rows with equal values keep their order. Rows without a price come
+     * last when sorting by price, in both directions.
+     */
+    public int[] sortedRows(Column column, boolean ascending) {
+        // sort key in the upper 32 bits, row index in the lower, so one primitive sort does it
+        long[] keys = new long[size];
+        for (int row = 0; row < size; row++) {
+            long key = column == Column.PRICE && Double.isNaN(getPrice(row)) ? Integer.MAX_VALUE
+                    : ascending ? sortKey(column, row) : -sortKey(column, row);
+            keys[row] = (key << 32) | row;
+        }
+        Arrays.parallelSort(keys);
+        int[] rows = new int[size];
+        for (int i = 0; i < size; i++) {
+            rows[i] = (int) keys[i];
+        }
+        return rows;
+    }
+
+    private long sortKey(Column column, int row) {
+        return switch (column) {
+            case LENGTH -> getLength(row);
+            case WIDTH -> getWidth(row);
+            case HEIGHT -> getHeight(row);
+            case WEIGHT -> getWeight(row);
+            case CARRIER -> companies.get(row);
+            case TIER -> getTier(row);
+            // cents
+            case PRICE -> Math.round(getPrice(row) * 100);
+        };
+    }
+
+    /**
+     * Selects the rows that match a filter.
+     *
+     * @param rows the rows to filter in their display order, or null for all rows in table order.
+     * @param company the carrier to keep, or null for all.
+     * @param tier the tier to keep, or null for all.
+     * @param maxPrice the highest price to keep, unpriced rows are kept only for {@code Double.POSITIVE_INFINITY}.
+     * @return the matching rows in the given order.
+     */
+    public int[] select(int[] rows, Utils.Company company, Integer tier, double maxPrice) {
+        int count = rows == null ? size : rows.length;
+        int[] selected = new int[count];
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            int row = rows == null ? i : rows[i];
+            if (company != null && companies.get(row) != company.ordinal()) {
+                continue;
+            }
+            if (tier != null && getTier(row) != tier) {
+                continue;
+            }
+            double price = getPrice(row);
+            if (maxPrice != Double.POSITIVE_INFINITY && !(price <= maxPrice)) {
+                continue;
+            }
+            selected[n++] = row;
+        }
+        return Arrays.copyOf(selected, n);
+    }
+
+    /**
+     * Loads the output of a {@link control.BatchRunner}, one line
+     * {@code length;width;height;weight;carrier;tier;price[;reason]} per row.
+     * Lines whose measurements cannot be read are kept as rejected rows with zero measurements.
+     *
+     * @param file the priced manifest.
+     * @return the table.
+     * @throws IOException if reading fails.
+     */
+    public static PacketTable load(Path file) throws IOException {
+        PacketTable table = new PacketTable((int) Math.min(Integer.MAX_VALUE - 8, Files.size(file) / 24 + 16));
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                String[] tokens = line.split(";");
+                Utils.Company company = Utils.Company.DHL;
+                int tier = Calculator.REJECTED;
+                double price = Double.NaN;
+                try {
+                    company = Utils.Company.valueOf(tokens[4]);
+                    tier = Integer.parseInt(tokens[5]);
+                    price = Double.parseDouble(tokens[6]);
+                } catch (RuntimeException e) {
+                    // keep the row as rejected
+                }
+                table.add(parse(tokens, 0), parse(tokens, 1), parse(tokens, 2), parse(tokens, 3), company, tier, price);
+            }
+        }
+        return table;
+    }
+
+    private static int parse(String[] tokens, int index) {
+        try {
+            return Integer.parseInt(tokens[index].trim());
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    private void allocate(int capacity) {
+        lengths = IntBuffer.allocate(capacity);
+        widths = IntBuffer.allocate(capacity);
+        heights = IntBuffer.allocate(capacity);
+        weights = IntBuffer.allocate(capacity);
+        companies = ByteBuffer.allocate(capacity);
+        tiers = ByteBuffer.allocate(capacity);
+        prices = DoubleBuffer.allocate(capacity);
+    }
+
+    private void grow() {
+        IntBuffer oldLengths = lengths(), oldWidths = widths(), oldHeights = heights(), oldWeights = weights();
+        ByteBuffer oldCompanies = companies(), oldTiers = tiers();
+        DoubleBuffer oldPrices = prices();
+        allocate((int) Math.min(Integer.MAX_VALUE - 8, Math.max(16, (long) size * 2)));
+        lengths.put(oldLengths.rewind());
+        widths.put(oldWidths.rewind());
+        heights.put(oldHeights.rewind());
+        weights.put(oldWeights.rewind());
+        companies.put(oldCompanies.rewind());
+        tiers.put(oldTiers.rewind());
+        prices.put(oldPrices.rewind());
+        for (Buffer column : new Buffer[]{lengths, widths, heights, weights, companies, tiers, prices}) {
+            column.clear();
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package data;
+
+import control.Calculator;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * A {@code Project} is a set of parcels together with the options they are priced with.
+ * <p>
+ * Quotes are cached in the {@link PacketTable}. Rows with the tier {@link PacketTable#UNPRICED} are priced on
+ * first access, so a project can be opened without pricing all of its parcels up front. Each row is priced
+ * with its own carrier and the express, vat and optimize options of the project.
+ * </p>
+ * <p>
+ * When the shipping costs change, {@link #reprice(ImportHandler)} updates only the quotes of the tiers whose
+ * price changed, found through a {@link TierIndex}, instead of pricing every row again.
+ * </p>
+ */
+public class Project {
+
+    // repricing actions for the rows of a tier
+    private static final byte KEEP = 0;
+    private static final byte UPDATE = 1;
+    private static final byte SEARCH = 2;
+
+    private final PacketTable packets;
+    private final Utils.Company company;
+    private final boolean express;
+    private final double vat;
+    private final boolean optimize;
+
+    // shipping costs of the cached quotes, null for the current ones
+    private ImportHandler tariff;
+    // created on first use, one per carrier
+    private final Map<Utils.Company, Calculator> calculators = new EnumMap<>(Utils.Company.class);
+
+    /**
+     * @param packets the parcels, priced or not.
+     * @param company the default shipping provider.
+     * @param express express shipment.
+     * @param vat the vat to deduct.
+     * @param optimize optimized packing.
+     */
+    public Project(PacketTable packets, Utils.Company company, boolean express, double vat, boolean optimize) {
+        this.packets = packets;
+        this.company = company;
+        this.express = express;
+        this.vat = vat;
+        this.optimize = optimize;
+    }
+
+    /**
+     * @param tariff the shipping costs the cached quotes were computed with.
+     */
+    public Project(PacketTable packets, Utils.Company company, boolean express, double vat, boolean optimize,
+                   ImportHandler tariff) {
+        this(packets, company, express, vat, optimize);
+        this.tariff = tariff;
+    }
+
+    public PacketTable getPackets() {
+        return packets;
+    }
+
+    public Utils.Company getCompany() {
+        return company;
+    }
+
+    public boolean isExpress() {
+        return express;
+    }
+
+    public double getVat() {
+        return vat;
+    }
+
+    public boolean isOptimize() {
+        return optimize;
+    }
+
+    /**
+     * Returns the parcels of this project with other options. The cached quotes are kept if the options they
+     * depend on are unchanged, otherwise every row is priced again on access.
+     *
+     * @return a project with the given options and the shipping costs of this one.
+     */
+    public Project withOptions(Utils.Company company, boolean express, double vat, boolean optimize) {
+        // optimized quotes ignore express and vat
+        boolean samePricing = optimize == this.optimize
+                && (optimize || express == this.express && Double.compare(vat, this.vat) == 0);
+        return new Project(samePricing ? packets : packets.withoutQuotes(), company, express, vat, optimize,
+                getTariff());
+    }
+
+    /**
+     * @return the price tier of the row, pricing it if necessary.
+     */
+    public int getTier(int row) {
+        ensurePriced(row);
+        return packets.getTier(row);
+    }
+
+    /**
+     * @return the price of the row, pricing it if necessary.
+     */
+    public double getPrice(int row) {
+        ensurePriced(row);
+        return packets.getPrice(row);
+    }
+
+    /**
+     * Prices all rows that have no cached quote.
+     */
+    public void priceAll() {
+        for (int row = 0; row < packets.size(); row++) {
+            ensurePriced(row);
+        }
+    }
+
+    /**
+     * Prices a row if it has no cached quote.
+     */
+    public void ensurePriced(int row) {
+        if (packets.getTier(row) != PacketTable.UNPRICED) {
+            return;
+        }
+        Calculator calculator = calculator(packets.getCompany(row));
+        int tier;
+        double costs;
+        try {
+            Packet packet = new Packet(packets.getLength(row), packets.getWidth(row),
+                    packets.getHeight(row), packets.getWeight(row));
+            Calculator.TierPrice quote = calculator.quote(packet, express, vat, optimize, null);
+            tier = quote.tier;
+            costs = quote.price;
+        } catch (IllegalArgumentException | AssertionError e) {
+            tier = Calculator.REJECTED;
+            costs = Double.NaN;
+        }
+        packets.setQuote(row, tier, costs);
+    }
+
+    /**
+     * @return the version of the shipping costs the cached quotes are computed with.
+     */
+    public long getTariffVersion() {
+        return calculator(company).getTariffVersion();
+    }
+
+    /**
+     * @return the shipping costs the cached quotes are computed with.
+     */
+    public ImportHandler getTariff() {
+        return calculator(company).getTariff();
+    }
+
+    /**
+     * Switches to new shipping costs and reprices the cached quotes they affect, in parallel.
+     * <p>
+     * Without optimization the tier of a row only depends on its measurements, so only rows in tiers whose price
+     * changed get a new price. With optimization the cheapest tier a rotation fits into can change as well: a row
+     * is searched again if its tier got more expensive or another tier got cheaper than its tier, otherwise at
+     * most its price is updated. Unpriced rows are priced with the new shipping costs on access.
+     * </p>
+     *
+     * @param newTariff the new shipping costs.
+     * @return the rows whose tier or price changed.
+     */
+    public RepriceReport reprice(ImportHandler newTariff) {
+        return reprice(newTariff, false);
+    }
+
+    /**
+     * Switches to new shipping costs like {@link #reprice(ImportHandler)}, optionally without searching.
+     *
+     * @param newTariff the new shipping costs.
+     * @param searchLazily if true, rows that need a new rotation search are only marked unpriced and searched on
+     *                     access. They are reported with the tier {@link PacketTable#UNPRICED}.
+     * @return the rows whose tier or price changed.
+     */
+    public RepriceReport reprice(ImportHandler newTariff, boolean searchLazily) {
+        Utils.Company[] companies = Utils.Company.values();
+        int tiers = Calculator.TIER_COUNT;
+        Map<Utils.Company, Calculator> newCalculators = new EnumMap<>(Utils.Company.class);
+        double[] newPrices = new double[companies.length * tiers];
+        // what to do with the rows of a carrier and tier
+        byte[] actions = new byte[companies.length * tiers];
+        for (Utils.Company c : companies) {
+            Calculator oldCalculator = calculator(c);
+            Calculator newCalculator = new Calculator(newTariff);
+            newCalculator.setShippingChoice(c);
+            newCalculators.put(c, newCalculator);
+
+            int group = c.ordinal() * tiers;
+            double[] oldPrices = new double[tiers];
+            for (int tier = 0; tier < tiers; tier++) {
+                oldPrices[tier] = oldCalculator.getTierPrice(tier);
+                newPrices[group + tier] = newCalculator.getTierPrice(tier);
+            }
+            for (int tier = 0; tier < tiers; tier++) {
+                boolean changed = oldPrices[tier] != newPrices[group + tier];
+                boolean search = false;
+                if (optimize) {
+                    search = newPrices[group + tier] > oldPrices[tier];
+                    for (int other = 0; other < tiers; other++) {
+                        // the search keeps the first of equally cheap rotations, so ties need a search too
+                        search |= other != tier && newPrices[group + other] < oldPrices[other]
+                                && newPrices[group + other] <= newPrices[group + tier];
+                    }
+                }
+                actions[group + tier] = search ? SEARCH : changed ? UPDATE : KEEP;
+            }
+        }
+
+        TierIndex index = TierIndex.build(packets);
+        int[] rows = IntStream.range(0, actions.length)
+                .filter(group -> actions[group] != KEEP)
+                .flatMap(group -> Arrays.stream(index.rows(companies[group / tiers], group % tiers)))
+                .toArray();
+        Arrays.parallelSort(rows);
+        int[] oldTiers = new int[rows.length];
+        double[] oldRowPrices = new double[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            oldTiers[i] = packets.getTier(rows[i]);
+            oldRowPrices[i] = packets.getPrice(rows[i]);
+        }
+
+        synchronized (this) {
+            calculators.clear();
+            calculators.putAll(newCalculators);
+            tariff = newTariff;
+        }
+
+        // rows are distinct, so the quotes can be written concurrently
+        IntStream.range(0, rows.length).parallel().forEach(i -> {
+            int row = rows[i];
+            int group = packets.getCompany(row).ordinal() * tiers + oldTiers[i];
+            if (actions[group] == SEARCH) {
+                packets.setQuote(row, PacketTable.UNPRICED, Double.NaN);
+                if (!searchLazily) {
+                    ensurePriced(row);
+                }
+            } else {
+                double price = newPrices[group];
+                packets.setQuote(row, oldTiers[i], optimize ? price : Calculator.applyOptions(price, express, vat));
+            }
+        });
+
+        int[] changed = IntStream.range(0, rows.length)
+                .filter(i -> packets.getTier(rows[i]) != oldTiers[i]
+                        || Double.compare(packets.getPrice(rows[i]), oldRowPrices[i]) != 0)
+                .toArray();
+        int[] changedRows = new int[changed.length];
+        int[] changedOldTiers = new int[changed.length];
+        double[] changedOldPrices = new double[changed.length];
+        int[] changedNewTiers = new int[changed.length];
+        double[] changedNewPrices = new double[changed.length];
+        for (int i = 0; i < changed.length; i++) {
+            int row = rows[changed[i]];
+            changedRows[i] = row;
+            changedOldTiers[i] = oldTiers[changed[i]];
+            changedOldPrices[i] = oldRowPrices[changed[i]];
+            changedNewTiers[i] = packets.getTier(row);
+            changedNewPrices[i] = packets.getPrice(row);
+        }
+        return new RepriceReport(rows.length, changedRows, changedOldTiers, changedOldPrices,
+                changedNewTiers, changedNewPrices);
+    }
+
+    private synchronized Calculator calculator(Utils.Company company) {
+        return calculators.computeIfAbsent(company, c -> {
+            Calculator calculator = tariff == null ? new Calculator() : new Calculator(tariff);
+            calculator.setShippingChoice(c);
+            return calculator;
+        });
+    }
+}
@@ -0,0 +1,194 @@
+package data;
+
+import control.Calculator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@code ProjectFile} class reads and writes {@link Project}s in a compact binary format.
+ * <p>
+ * The file starts with a 128 byte header (magic, version, row count, options, tariff version and the prices of
+ * that tariff per carrier and tier), followed by one block per column: prices (double), lengths, widths, heights,
+ * weights (int), carriers and tiers (byte).
+ * All values are little endian, every column starts at a multiple of its element size.
+ * </p>
+ * <p>
+ * Reading maps the file privately and wraps the column blocks without copying or parsing, so even large
+ * projects open instantly. Read-only files are mapped read-only and only the quote columns are copied.
+ * Quotes written with other shipping costs are repriced incrementally, see {@link Project#reprice(ImportHandler)}.
+ * Optimized rows that need a new rotation search are only marked unpriced and searched on access.
+ * </p>
+ */
+public class ProjectFile {
+
+    private static final int MAGIC = 0x4a504350; // "PCPJ"
+    private static final int VERSION = 2;
+    private static final int HEADER = 128;
+    private static final int TARIFF_OFFSET = 32;
+    private static final int BYTES_PER_ROW = 8 + 4 * 4 + 1 + 1;
+    private static final int CHUNK = 1 << 16;
+
+    /**
+     * Writes a project. The file is replaced only after it was written completely.
+     *
+     * @param file the target file.
+     * @param project the project to write.
+     * @throws IOException if writing fails.
+     */
+    public static void write(Path file, Project project) throws IOException {
+        PacketTable packets = project.getPackets();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(packets.size())
+                    .put((byte) project.getCompany().ordinal())
+                    .put((byte) (project.isExpress() ? 1 : 0))
+                    .put((byte) (project.isOptimize() ? 1 : 0))
+                    .put((byte) 0)
+                    .putDouble(project.getVat())
+                    .putLong(project.getTariffVersion());
+            ImportHandler tariff = project.getTariff();
+            for (List<Double> prices : List.of(tariff.getPriceDHL(), tariff.getPriceHermes())) {
+                for (int tier = 0; tier < Calculator.TIER_COUNT; tier++) {
+                    header.putDouble(prices.get(tier));
+                }
+            }
+            header.clear();
+            writeFully(channel, header);
+
+            ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK).order(ByteOrder.LITTLE_ENDIAN);
+            DoubleBuffer prices = packets.prices();
+            while (prices.hasRemaining()) {
+                chunk.clear();
+                DoubleBuffer view = chunk.asDoubleBuffer();
+                int n = Math.min(view.capacity(), prices.remaining());
+                view.put(prices.slice().limit(n));
+                prices.position(prices.position() + n);
+                chunk.limit(n * 8);
+                writeFully(channel, chunk);
+            }
+            for (IntBuffer column : new IntBuffer[]{packets.lengths(), packets.widths(), packets.heights(), packets.weights()}) {
+                while (column.hasRemaining()) {
+                    chunk.clear();
+                    IntBuffer view = chunk.asIntBuffer();
+                    int n = Math.min(view.capacity(), column.remaining());
+                    view.put(column.slice().limit(n));
+                    column.position(column.position() + n);
+                    chunk.limit(n * 4);
+                    writeFully(channel, chunk);
+                }
+            }
+            writeFully(channel, packets.companies());
+            writeFully(channel, packets.tiers());
+            channel.force(false);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Opens a project by mapping its file.
+     *
+     * @param file the project file.
+     * @return the project, backed by a private copy-on-write mapping of the file.
+     * @throws IOException if the file cannot be read or is not a project file.
+     */
+    public static Project read(Path file) throws IOException {
+        MappedByteBuffer map;
+        boolean writable = Files.isWritable(file);
+        try (FileChannel channel = writable
+                ? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER) {
+                throw new IOException("Not a project file: " + file);
+            }
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Project file is too large: " + file);
+            }
+            // a private mapping never writes back, it just lets us cache new quotes in the mapped columns
+            map = channel.map(writable ? FileChannel.MapMode.PRIVATE : FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        map.order(ByteOrder.LITTLE_ENDIAN);
+        if (map.getInt(0) != MAGIC) {
+            throw new IOException("Not a project file: " + file);
+        }
+        int version = map.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported project file version " + version + ": " + file);
+        }
+        // the header is checked completely, so a corrupt file fails here and not later in the columns
+        int rows = map.getInt(8);
+        if (rows < 0 || map.capacity() != HEADER + (long) rows * BYTES_PER_ROW) {
+            throw new IOException("Bad project header, " + rows + " rows do not match the file size "
+                    + map.capacity() + ": " + file);
+        }
+        int carrier = map.get(12) & 0xff;
+        if (carrier >= Utils.Company.values().length) {
+            throw new IOException("Bad project header, unknown carrier " + carrier + ": " + file);
+        }
+        Utils.Company company = Utils.Company.values()[carrier];
+        boolean express = map.get(13) != 0;
+        boolean optimize = map.get(14) != 0;
+        double vat = map.getDouble(16);
+        long tariffVersion = map.getLong(24);
+
+        int offset = HEADER;
+        DoubleBuffer prices = slice(map, offset, rows * 8).asDoubleBuffer();
+        offset += rows * 8;
+        IntBuffer[] measurements = new IntBuffer[4];
+        for (int i = 0; i < measurements.length; i++) {
+            measurements[i] = slice(map, offset, rows * 4).asIntBuffer();
+            offset += rows * 4;
+        }
+        ByteBuffer companies = slice(map, offset, rows);
+        offset += rows;
+        ByteBuffer tiers = slice(map, offset, rows);
+        if (!writable) {
+            // quotes have to be cached somewhere, copy just these columns to the heap
+            prices = DoubleBuffer.allocate(rows).put(prices).clear();
+            tiers = ByteBuffer.allocate(rows).put(tiers).clear();
+        }
+
+        PacketTable packets = new PacketTable(measurements[0], measurements[1], measurements[2], measurements[3],
+                companies, tiers, prices);
+        List<List<Double>> tariffPrices = new ArrayList<>();
+        for (int c = 0; c < 2; c++) {
+            List<Double> carrierPrices = new ArrayList<>();
+            for (int tier = 0; tier < Calculator.TIER_COUNT; tier++) {
+                carrierPrices.add(map.getDouble(TARIFF_OFFSET + (c * Calculator.TIER_COUNT + tier) * 8));
+            }
+            tariffPrices.add(carrierPrices);
+        }
+        Project project = new Project(packets, company, express, vat, optimize,
+                new ImportHandler(tariffVersion, tariffPrices.get(0), tariffPrices.get(1)));
+        ImportHandler current = ImportHandler.getDefault();
+        if (rows > 0 && tariffVersion != current.getTariffVersion()) {
+            project.reprice(current, true);
+        }
+        return project;
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        return buffer.slice(offset, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package data;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * The {@code RepriceReport} lists the rows whose quote changed when a {@link Project} was repriced with new
+ * shipping costs, together with the old and the new tier and price.
+ */
+public class RepriceReport {
+
+    private final int evaluated;
+    private final int[] rows;
+    private final int[] oldTiers;
+    private final double[] oldPrices;
+    private final int[] newTiers;
+    private final double[] newPrices;
+
+    RepriceReport(int evaluated, int[] rows, int[] oldTiers, double[] oldPrices, int[] newTiers, double[] newPrices) {
+        this.evaluated = evaluated;
+        this.rows = rows;
+        this.oldTiers = oldTiers;
+        this.oldPrices = oldPrices;
+        this.newTiers = newTiers;
+        this.newPrices = newPrices;
+    }
+
+    /**
+     * @return the number of rows that had to be repriced, changed or not.
+     */
+    public int getEvaluatedCount() {
+        return evaluated;
+    }
+
+    /**
+     * @return the number of changed rows.
+     */
+    public int size() {
+        return rows.length;
+    }
+
+    /**
+     * @return the row index of the i-th change, changes are in ascending row order.
+     */
+    public int getRow(int i) {
+        return rows[i];
+    }
+
+    public int getOldTier(int i) {
+        return oldTiers[i];
+    }
+
+    public double getOldPrice(int i) {
+        return oldPrices[i];
+    }
+
+    public int getNewTier(int i) {
+        return newTiers[i];
+    }
+
+    public double getNewPrice(int i) {
+        return newPrices[i];
+    }
+
+    /**
+     * Writes the changes as CSV: row;old tier;old price;new tier;new price
+     *
+     * @param file the target file.
+     * @throws IOException if writing fails.
+     */
+    public void write(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < rows.length; i++) {
+                writer.write(String.format(Locale.ROOT, "%d;%d;%.2f;%d;%.2f", rows[i], oldTiers[i], oldPrices[i],
+                        newTiers[i], newPrices[i]));
+                writer.newLine();
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package data;
+
+import control.Calculator;
+
+/**
+ * The {@code TierIndex} groups the rows of a {@link PacketTable} by carrier and price tier.
+ * <p>
+ * The rows of all groups are stored in one array, group after group, and each group is addressed by its start
+ * offset, so the index costs four bytes per priced row. It is built with a single counting pass over the
+ * carrier and tier columns. Rejected and unpriced rows are not indexed.
+ * </p>
+ */
+public class TierIndex {
+
+    private final int[] offsets;
+    private final int[] rows;
+
+    private TierIndex(int[] offsets, int[] rows) {
+        this.offsets = offsets;
+        this.rows = rows;
+    }
+
+    /**
+     * Indexes the quotes currently cached in a table.
+     *
+     * @param packets the table to index.
+     * @return the index, rows of each group are in ascending order.
+     */
+    public static TierIndex build(PacketTable packets) {
+        int groups = Utils.Company.values().length * Calculator.TIER_COUNT;
+        int[] offsets = new int[groups + 1];
+        int size = packets.size();
+        for (int row = 0; row < size; row++) {
+            int group = group(packets, row);
+            if (group >= 0) {
+                offsets[group + 1]++;
+            }
+        }
+        for (int group = 0; group < groups; group++) {
+            offsets[group + 1] += offsets[group];
+        }
+        int[] next = offsets.clone();
+        int[] rows = new int[offsets[groups]];
+        for (int row = 0; row < size; row++) {
+            int group = group(packets, row);
+            if (group >= 0) {
+                rows[next[group]++] = row;
+            }
+        }
+        return new TierIndex(offsets, rows);
+    }
+
+    /**
+     * @return the number of rows priced with the tier of the carrier.
+     */
+    public int count(Utils.Company company, int tier) {
+        int group = company.ordinal() * Calculator.TIER_COUNT + tier;
+        return offsets[group + 1] - offsets[group];
+    }
+
+    /**
+     * @return the rows priced with the tier of the carrier, in ascending order.
+     */
+    public int[] rows(Utils.Company company, int tier) {
+        int group = company.ordinal() * Calculator.TIER_COUNT + tier;
+        int[] result = new int[offsets[group + 1] - offsets[group]];
+        System.arraycopy(rows, offsets[group], result, 0, result.length);
+        return result;
+    }
+
+    private static int group(PacketTable packets, int row) {
+        int tier = packets.getTier(row);
+        if (tier < 0 || tier >= Calculator.TIER_COUNT) {
+            return -1;
+        }
+        return packets.getCompany(row).ordinal() * Calculator.TIER_COUNT + tier;
+    }
+}
@@ -1,17 +1,26 @@
 package gui;
 
 import control.Calculator;
+import data.OffHeapQuoteStore;
 import data.PackageCostOptimizer;
 import data.Utils;
 import data.Packet;
+import javafx.animation.PauseTransition;
+import javafx.beans.value.ChangeListener;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.scene.control.*;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.GridPane;
+import javafx.util.Duration;
 
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * The CalculatorArea class represents a UI component for calculating shipping costs based on user input.
@@ -19,20 +28,52 @@ import java.util.List;
  * a label to display the shipping cost, and a button to trigger the calculation.
  * The calculation is done by a separate Calculator object.
  *
+ * In live mode the price is updated while the user types. Normal quotes are classified right away, which takes far
+ * less than a frame. Optimized quotes are searched in the background after the input has been idle for
+ * {@link #DEBOUNCE_MILLIS}, a search for outdated input is cancelled, and the best price found so far is shown while
+ * the search runs. Optimized prices are cached, so returning to a parcel shows its price immediately.
+ * Live prices are previews, only the Calculate button produces a recorded quote.
+ *
  * @see Calculator Used for performing the shipping cost calculation.
  * @see Packet Used to create a packet object with user-provided dimensions and weight.
  */
 
 public class CalculatorArea extends GridPane {
 
+    /** Idle time before an optimized live price is searched. */
+    public static final int DEBOUNCE_MILLIS = 250;
+
+    // created on the first calculation, so the shipping costs are not imported before the window is shown
     private Calculator calculator;
 
+    // input fields
+    private final TextField lengthTextField = new TextField();
+    private final TextField widthTextField = new TextField();
+    private final TextField heightTextField = new TextField();
+    private final TextField weightTextField = new TextField();
+    private final Label shippingCostLabel = new Label("?");
+
+    // live mode, all of it is created on first use
+    private final CheckBox liveCheckBox = new CheckBox("Live");
+    private final PauseTransition debounce = new PauseTransition(Duration.millis(DEBOUNCE_MILLIS));
+    private final Map<Utils.Company, Calculator> liveCalculators = new EnumMap<>(Utils.Company.class);
+    private OffHeapQuoteStore liveCache;
+    private ExecutorService liveExecutor;
+    // the running optimizer search, null if none
+    private Task<LivePrice> liveTask;
+
+    // options
+    private final RadioButton dhlButton = new RadioButton("DHL");
+    private final RadioButton hermesButton = new RadioButton("HERMES");
+    private final CheckBox expressCheckBox = new CheckBox("Expressversand");
+    private final CheckBox vatCheckBox = new CheckBox("MwSt abziehen?");
+    private final RadioButton vat7Button = new RadioButton("7%");
+    private final RadioButton vat19Button = new RadioButton("19%");
+    private final CheckBox optimize = new CheckBox("Optimieren?");
+
     public CalculatorArea() {
         this.setPadding(new Insets(10, 10, 10, 10));
 
-
-        calculator = new Calculator();
-
         // UI „Guidance“
         Label companyLabel = new Label("Unternehmen");
         Label destinationLabel = new Label("Ziel");
@@ -46,11 +87,6 @@ public class CalculatorArea extends GridPane {
         }
 
         // input fields
-        TextField lengthTextField = new TextField();
-        TextField widthTextField = new TextField();
-        TextField heightTextField = new TextField();
-        TextField weightTextField = new TextField();
-
         for (TextField textField : new TextField[]{lengthTextField, widthTextField, heightTextField, weightTextField}) {
             textField.setStyle("-fx-padding: 12 20 12 20;" +
                     "-fx-background-color: #ffffff;" +
@@ -61,7 +97,6 @@ public class CalculatorArea extends GridPane {
             textField.setMaxWidth(Double.MAX_VALUE);
         }
         // output label
-        Label shippingCostLabel = new Label("?");
         shippingCostLabel.setStyle("-fx-font-size: 16; -fx-font-weight: bold;");
 
         // buttons
@@ -75,10 +110,8 @@ public class CalculatorArea extends GridPane {
 
         // shipping Group
         ToggleGroup shippingGroup  = new ToggleGroup();
-        RadioButton dhlButton = new RadioButton("DHL");
         dhlButton.setToggleGroup(shippingGroup);
         dhlButton.setSelected(true);
-        RadioButton hermesButton = new RadioButton("HERMES");
         hermesButton.setToggleGroup(shippingGroup);
 
         // DESTINATION
@@ -91,18 +124,13 @@ public class CalculatorArea extends GridPane {
         worldButton.setToggleGroup(destinationGroup);
 
         // OPTIONS
-        CheckBox expressCheckBox = new CheckBox("Expressversand");
-
-        CheckBox vatCheckBox = new CheckBox("MwSt abziehen?");
         vatCheckBox.setSelected(false);
 
         ToggleGroup vatGroup = new ToggleGroup();
-        RadioButton vat7Button = new RadioButton("7%");
         vat7Button.setVisible(false);
         vat7Button.setSelected(true);
         vat7Button.setToggleGroup(vatGroup);
 
-        RadioButton vat19Button = new RadioButton("19%");
         vat19Button.setToggleGroup(vatGroup);
         vat19Button.setVisible(false);
 
@@ -111,8 +139,6 @@ public class CalculatorArea extends GridPane {
             vat19Button.setVisible(vatCheckBox.isSelected());
         });
 
-        CheckBox optimize = new CheckBox("Optimieren?");
-
 
         // add everything to the UI
         int row = 0;
@@ -185,7 +211,8 @@ public class CalculatorArea extends GridPane {
         this.add(shippingCostLabel, 2, row);
 
         row++;
-        this.add(calcButton, 1, row++);
+        this.add(calcButton, 1, row);
+        this.add(liveCheckBox, 2, row++);
 
         this.getChildren().forEach(node -> {
             GridPane.setMargin(node, new Insets(2.5, 2.5, 2.5, 2.5));
@@ -205,34 +232,16 @@ public class CalculatorArea extends GridPane {
 
                 Packet packet = new Packet(length, width, height, weight);
 
-                double vat = 0;
-                if (vatCheckBox.isSelected()) {
-                    if (vat7Button.isSelected()) {
-                        vat = 0.07;
-                    } else if (vat19Button.isSelected()) {
-                        vat = 0.19;
-                    } else {
-                        vat = 0.0;
-                    }
-                }
-
-                boolean express = expressCheckBox.isSelected();
+                double vat = getVat();
+                boolean express = isExpress();
 
                 // shipping group
-                if (dhlButton.isSelected()) {
-                    this.calculator.setShippingChoice(Utils.Company.DHL);
-                }else if (hermesButton.isSelected()) {
-                    this.calculator.setShippingChoice(Utils.Company.HERMES);
-                }
+                Calculator calculator = getCalculator();
+                calculator.setShippingChoice(getCompany());
+                calculator.setJournal(PackageCalculator.getInstance().getJournal());
 
-                double costs = 0;
-                if (optimize.isSelected()) {
-                    PackageCostOptimizer pco = new PackageCostOptimizer(packet);
-
-                    costs = pco.optimizeCosts();
-                } else {
-                    costs = this.calculator.calcShippingCosts(packet, express, vat);
-                }
+                // an optimized parcel the live preview has searched already is taken from its cache
+                double costs = calculator.quote(packet, express, vat, isOptimize(), getLiveCache()).price;
 
                 costs = Math.round(costs* 100) / 100.0;
 
@@ -244,5 +253,232 @@ public class CalculatorArea extends GridPane {
             }
         });
 
+        // live mode
+        liveCheckBox.setSelected(true);
+        debounce.setOnFinished(ae -> startLiveOptimization());
+        ChangeListener<Object> inputChanged = (observable, oldValue, newValue) -> updateLivePrice();
+        for (TextField textField : new TextField[]{lengthTextField, widthTextField, heightTextField, weightTextField}) {
+            textField.textProperty().addListener(inputChanged);
+        }
+        shippingGroup.selectedToggleProperty().addListener(inputChanged);
+        vatGroup.selectedToggleProperty().addListener(inputChanged);
+        for (CheckBox checkBox : new CheckBox[]{expressCheckBox, vatCheckBox, optimize, liveCheckBox}) {
+            checkBox.selectedProperty().addListener(inputChanged);
+        }
+
+    }
+
+    /**
+     * Price shown in live mode, possibly the intermediate result of an optimizer search.
+     */
+    private static class LivePrice {
+        final int tier;
+        final double costs;
+        final boolean done;
+
+        LivePrice(int tier, double costs, boolean done) {
+            this.tier = tier;
+            this.costs = costs;
+            this.done = done;
+        }
+    }
+
+    /**
+     * Called on every change of the input. Cancels outdated searches and shows the new price if it is known
+     * or cheap to compute, otherwise schedules a search.
+     */
+    private void updateLivePrice() {
+        debounce.stop();
+        if (liveTask != null) {
+            liveTask.cancel();
+            liveTask = null;
+        }
+        if (!liveCheckBox.isSelected()) {
+            return;
+        }
+        int[] measurements = parseMeasurements();
+        if (measurements == null) {
+            shippingCostLabel.setText("?");
+            return;
+        }
+        Utils.Company company = getCompany();
+        Calculator calculator = getLiveCalculator(company);
+
+        if (!isOptimize()) {
+            // classifying takes a few comparisons, less than a cache lookup, so it is not cached
+            int tier = calculator.classify(measurements[0], measurements[1], measurements[2], measurements[3]);
+            showLivePrice(tier == Calculator.REJECTED ? null
+                    : new LivePrice(tier, Calculator.applyOptions(calculator.getTierPrice(tier), isExpress(), getVat()), true));
+            return;
+        }
+
+        // optimized prices are cached by the optimizer, a known parcel is shown without searching again
+        OffHeapQuoteStore cache = getLiveCache();
+        long key = OffHeapQuoteStore.key(company, true, measurements[0], measurements[1], measurements[2], measurements[3]);
+        double costs = cache.get(key);
+        if (!Double.isNaN(costs)) {
+            showLivePrice(new LivePrice(cache.getTier(key), costs, true));
+            return;
+        }
+        shippingCostLabel.setText("...");
+        debounce.playFromStart();
+    }
+
+    /**
+     * Searches the optimized price of the current input in the background and shows its progress.
+     */
+    private void startLiveOptimization() {
+        int[] measurements = parseMeasurements();
+        if (measurements == null || !isOptimize() || !liveCheckBox.isSelected()) {
+            return;
+        }
+        Packet packet = new Packet(measurements[0], measurements[1], measurements[2], measurements[3]);
+        Calculator calculator = getLiveCalculator(getCompany());
+        OffHeapQuoteStore cache = getLiveCache();
+
+        Task<LivePrice> task = new Task<>() {
+            @Override
+            protected LivePrice call() {
+                PackageCostOptimizer pco = new PackageCostOptimizer(packet, calculator);
+                pco.setQuoteStore(cache);
+                pco.setPreview(true);
+                pco.setProgress((bestTier, bestCosts, done) -> {
+                    if (bestTier != Calculator.REJECTED) {
+                        // the best rotation so far is an upper bound of the price
+                        // updates are coalesced, the FX thread only sees the latest one per pulse
+                        updateValue(new LivePrice(bestTier, bestCosts, false));
+                    }
+                    return !isCancelled();
+                });
+                double costs = pco.optimizeCosts();
+                return new LivePrice(pco.getBestTier(), costs, true);
+            }
+        };
+        task.valueProperty().addListener((observable, oldValue, newValue) -> {
+            if (task == liveTask && newValue != null) {
+                showLivePrice(newValue);
+            }
+        });
+        task.setOnFailed(e -> {
+            if (task == liveTask) {
+                showLivePrice(null);
+            }
+        });
+        liveTask = task;
+        getLiveExecutor().execute(task);
+    }
+
+    private void showLivePrice(LivePrice price) {
+        if (price == null) {
+            shippingCostLabel.setText("Nicht versendbar");
+        } else {
+            shippingCostLabel.setText((price.done ? "Preis: " : "Preis: bis ") + Math.round(price.costs * 100) / 100.0);
+        }
+    }
+
+    /**
+     * @return length, width, height and weight, or null if the input is incomplete or cannot be shipped.
+     */
+    private int[] parseMeasurements() {
+        try {
+            int[] measurements = {
+                    Integer.parseInt(lengthTextField.getText().trim()),
+                    Integer.parseInt(widthTextField.getText().trim()),
+                    Integer.parseInt(heightTextField.getText().trim()),
+                    Integer.parseInt(weightTextField.getText().trim())};
+            // the limits of Packet, checked here so typing does not post error messages
+            if (measurements[0] < 0 || measurements[1] < 0 || measurements[2] < 0 || measurements[3] < 0
+                    || measurements[0] > 1200 || measurements[1] > 600 || measurements[2] > 600
+                    || measurements[3] > 31500) {
+                return null;
+            }
+            return measurements;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private Calculator getLiveCalculator(Utils.Company company) {
+        // one calculator per carrier, never switched, so the background search can share it
+        return liveCalculators.computeIfAbsent(company, c -> {
+            Calculator calculator = new Calculator();
+            calculator.setShippingChoice(c);
+            return calculator;
+        });
+    }
+
+    private OffHeapQuoteStore getLiveCache() {
+        if (liveCache == null) {
+            liveCache = OffHeapQuoteStore.allocate(100_000);
+        }
+        return liveCache;
+    }
+
+    private ExecutorService getLiveExecutor() {
+        if (liveExecutor == null) {
+            liveExecutor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "live-optimizer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return liveExecutor;
+    }
+
+    private Calculator getCalculator() {
+        if (calculator == null) {
+            calculator = new Calculator();
+        }
+        return calculator;
+    }
+
+    /**
+     * @return the selected shipping provider.
+     */
+    public Utils.Company getCompany() {
+        return hermesButton.isSelected() ? Utils.Company.HERMES : Utils.Company.DHL;
+    }
+
+    public boolean isExpress() {
+        return expressCheckBox.isSelected();
+    }
+
+    /**
+     * @return the vat to deduct, 0 if no deduction is selected.
+     */
+    public double getVat() {
+        if (!vatCheckBox.isSelected()) {
+            return 0;
+        }
+        if (vat7Button.isSelected()) {
+            return 0.07;
+        } else if (vat19Button.isSelected()) {
+            return 0.19;
+        }
+        return 0.0;
+    }
+
+    public boolean isOptimize() {
+        return optimize.isSelected();
+    }
+
+    /**
+     * Selects the options, e.g. when a project is opened.
+     *
+     * @param company the shipping provider.
+     * @param express express shipment.
+     * @param vat the vat to deduct, 0.07 or 0.19, anything else selects no deduction.
+     * @param optimize optimized packing.
+     */
+    public void setOptions(Utils.Company company, boolean express, double vat, boolean optimize) {
+        dhlButton.setSelected(company == Utils.Company.DHL);
+        hermesButton.setSelected(company == Utils.Company.HERMES);
+        expressCheckBox.setSelected(express);
+        vatCheckBox.setSelected(vat == 0.07 || vat == 0.19);
+        vat7Button.setSelected(vat != 0.19);
+        vat19Button.setSelected(vat == 0.19);
+        vat7Button.setVisible(vatCheckBox.isSelected());
+        vat19Button.setVisible(vatCheckBox.isSelected());
+        this.optimize.setSelected(optimize);
     }
 }
@@ -1,13 +1,37 @@
 package gui;
 
+import control.Messages;
+import data.PacketTable;
+import data.Project;
+import data.Utils;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.collections.FXCollections;
+import javafx.concurrent.Task;
+import javafx.geometry.Insets;
+import javafx.scene.control.*;
 import javafx.scene.layout.GridPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.stage.FileChooser;
+
+import java.io.File;
+import java.util.AbstractList;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntFunction;
 
 /**
- * The InspectorArea class represents a grid-based UI component for displaying widgets.
+ * The InspectorArea class represents a grid-based UI component for inspecting priced manifests.
  * It extends the GridPane class from JavaFX.
  *
- * It's used to create a grid of cells, where each cell can hold any type of widgets.
- * This class can be customized to suit the specific needs of the application.
+ * The rows are kept in the {@link PacketTable} of a {@link Project}, the TableView only holds the row indices of
+ * the current view, and cells are created for the visible rows only. Rows without a cached quote are priced on the
+ * background thread when they become visible, and their cells are refreshed afterwards. Sorting and filtering run
+ * on a background thread and replace the view when done, so even millions of rows neither block the UI nor exhaust
+ * the heap.
  *
  * @see GridPane Provides layout capabilities for arranging children in a grid-like manner.
  * @see PackageCalculator Used to perform calculations related to packaging.
@@ -16,4 +40,283 @@ import javafx.scene.layout.GridPane;
 
 public class InspectorArea extends GridPane {
 
+    private final TableView<Integer> tableView = new TableView<>();
+    private final ChoiceBox<String> companyChoice = new ChoiceBox<>();
+    private final ChoiceBox<String> tierChoice = new ChoiceBox<>();
+    private final TextField maxPriceTextField = new TextField();
+    private final Label countLabel = new Label();
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "inspector");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Project project = new Project(new PacketTable(), Utils.Company.DHL, false, 0, false);
+    // rows in sort order, null for table order
+    private int[] sortedRows;
+    // column and direction of sortedRows, to ignore sort requests that change nothing
+    private String sortedBy = "";
+    // visible rows without a quote, priced on the worker, only used on the FX thread
+    private final Set<Integer> unpricedRows = new LinkedHashSet<>();
+
+    public InspectorArea() {
+        this.setPadding(new Insets(10, 10, 10, 10));
+
+        Button loadButton = new Button("Load results");
+        loadButton.setOnAction(ae -> chooseResults());
+
+        companyChoice.getItems().add("All");
+        for (Utils.Company company : Utils.Company.values()) {
+            companyChoice.getItems().add(company.name());
+        }
+        companyChoice.getSelectionModel().selectFirst();
+
+        tierChoice.getItems().addAll("All", "0", "1", "2", "3", "4", "Rejected");
+        tierChoice.getSelectionModel().selectFirst();
+
+        maxPriceTextField.setPromptText("max. price");
+        maxPriceTextField.setPrefColumnCount(6);
+
+        companyChoice.setOnAction(ae -> refresh());
+        tierChoice.setOnAction(ae -> refresh());
+        maxPriceTextField.setOnAction(ae -> refresh());
+
+        HBox filterBox = new HBox(5, loadButton, companyChoice, tierChoice, maxPriceTextField, countLabel);
+        this.add(filterBox, 0, 0);
+
+        tableView.getColumns().add(column("Length", PacketTable.Column.LENGTH, row -> project.getPackets().getLength(row)));
+        tableView.getColumns().add(column("Width", PacketTable.Column.WIDTH, row -> project.getPackets().getWidth(row)));
+        tableView.getColumns().add(column("Height", PacketTable.Column.HEIGHT, row -> project.getPackets().getHeight(row)));
+        tableView.getColumns().add(column("Weight", PacketTable.Column.WEIGHT, row -> project.getPackets().getWeight(row)));
+        tableView.getColumns().add(column("Carrier", PacketTable.Column.CARRIER, row -> project.getPackets().getCompany(row)));
+        tableView.getColumns().add(column("Tier", PacketTable.Column.TIER, this::tierText));
+        tableView.getColumns().add(column("Price", PacketTable.Column.PRICE, this::priceText));
+
+        // sorting is done in the background on the columns, not by the TableView on the items
+        tableView.setSortPolicy(table -> {
+            sort();
+            return true;
+        });
+        tableView.setPlaceholder(new Label("No results loaded"));
+
+        this.add(tableView, 0, 1);
+        GridPane.setVgrow(tableView, Priority.ALWAYS);
+        GridPane.setHgrow(tableView, Priority.ALWAYS);
+        this.getChildren().forEach(node -> GridPane.setMargin(node, new Insets(2.5, 2.5, 2.5, 2.5)));
+        showRows(new int[0]);
+    }
+
+    /**
+     * Shows the parcels of a project.
+     *
+     * @param project the project to show.
+     */
+    public void setProject(Project project) {
+        this.project = project;
+        this.sortedRows = null;
+        this.sortedBy = "";
+        this.unpricedRows.clear();
+        tableView.getSortOrder().clear();
+        refresh();
+    }
+
+    public Project getProject() {
+        return this.project;
+    }
+
+    private void chooseResults() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Load priced manifest");
+        File file = fileChooser.showOpenDialog(getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+        run(new Task<PacketTable>() {
+            @Override
+            protected PacketTable call() throws Exception {
+                return PacketTable.load(file.toPath());
+            }
+
+            @Override
+            protected void succeeded() {
+                CalculatorArea options = PackageCalculator.getInstance().editorArea;
+                setProject(new Project(getValue(), options.getCompany(), options.isExpress(), options.getVat(),
+                        options.isOptimize()));
+            }
+        });
+    }
+
+    /**
+     * Sorts by the first sort column of the table view, then applies the filter.
+     */
+    private void sort() {
+        Project project = this.project;
+        if (tableView.getSortOrder().isEmpty()) {
+            if (!sortedBy.isEmpty()) {
+                sortedRows = null;
+                sortedBy = "";
+                refresh();
+            }
+            return;
+        }
+        TableColumn<Integer, ?> sortColumn = tableView.getSortOrder().get(0);
+        PacketTable.Column column = (PacketTable.Column) sortColumn.getUserData();
+        boolean ascending = sortColumn.getSortType() == TableColumn.SortType.ASCENDING;
+        if (sortedBy.equals(column + " " + ascending)) {
+            return;
+        }
+        sortedBy = column + " " + ascending;
+        run(new Task<int[]>() {
+            @Override
+            protected int[] call() {
+                if (column == PacketTable.Column.TIER || column == PacketTable.Column.PRICE) {
+                    project.priceAll();
+                }
+                return project.getPackets().sortedRows(column, ascending);
+            }
+
+            @Override
+            protected void succeeded() {
+                if (project == InspectorArea.this.project) {
+                    sortedRows = getValue();
+                    refresh();
+                }
+            }
+        });
+    }
+
+    /**
+     * Applies the filter to the sorted rows.
+     */
+    private void refresh() {
+        Project project = this.project;
+        int[] sortedRows = this.sortedRows;
+
+        String company = companyChoice.getValue();
+        Utils.Company companyFilter = company == null || company.equals("All") ? null : Utils.Company.valueOf(company);
+        String tier = tierChoice.getValue();
+        Integer tierFilter = tier == null || tier.equals("All") ? null : tier.equals("Rejected") ? -1 : Integer.valueOf(tier);
+        double maxPrice = Double.POSITIVE_INFINITY;
+        try {
+            if (!maxPriceTextField.getText().isBlank()) {
+                maxPrice = Double.parseDouble(maxPriceTextField.getText().replace(',', '.'));
+            }
+        } catch (NumberFormatException e) {
+            maxPriceTextField.setText("");
+        }
+        double maxPriceFilter = maxPrice;
+
+        run(new Task<int[]>() {
+            @Override
+            protected int[] call() {
+                if (tierFilter != null || maxPriceFilter != Double.POSITIVE_INFINITY) {
+                    project.priceAll();
+                }
+                return project.getPackets().select(sortedRows, companyFilter, tierFilter, maxPriceFilter);
+            }
+
+            @Override
+            protected void succeeded() {
+                if (project == InspectorArea.this.project) {
+                    showRows(getValue());
+                }
+            }
+        });
+    }
+
+    private void showRows(int[] rows) {
+        tableView.setItems(FXCollections.observableList(new RowList(rows)));
+        countLabel.setText(rows.length + " / " + project.getPackets().size());
+    }
+
+    private String tierText(int row) {
+        int tier = project.getPackets().getTier(row);
+        if (tier == PacketTable.UNPRICED) {
+            priceLater(row);
+            return "...";
+        }
+        return tier < 0 ? "Rejected" : Integer.toString(tier);
+    }
+
+    private String priceText(int row) {
+        PacketTable packets = project.getPackets();
+        if (packets.getTier(row) == PacketTable.UNPRICED) {
+            priceLater(row);
+            return "";
+        }
+        double price = packets.getPrice(row);
+        return Double.isNaN(price) ? "" : String.format("%.2f", price);
+    }
+
+    /**
+     * Prices a visible row in the background, an optimized row takes a rotation search. The rows of one layout
+     * pass are priced together, then the cells are refreshed.
+     */
+    private void priceLater(int row) {
+        if (unpricedRows.add(row) && unpricedRows.size() == 1) {
+            Platform.runLater(this::priceUnpricedRows);
+        }
+    }
+
+    private void priceUnpricedRows() {
+        Project project = this.project;
+        int[] rows = unpricedRows.stream().mapToInt(Integer::intValue).toArray();
+        unpricedRows.clear();
+        run(new Task<Void>() {
+            @Override
+            protected Void call() {
+                for (int row : rows) {
+                    if (row < project.getPackets().size()) {
+                        project.ensurePriced(row);
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            protected void succeeded() {
+                if (project == InspectorArea.this.project) {
+                    tableView.refresh();
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs a task in the background. Tasks run one after another, so the last one determines the view.
+     */
+    private void run(Task<?> task) {
+        task.setOnFailed(e -> Messages.post(Messages.Severity.ERROR, "Inspector: " + task.getException().getMessage()));
+        worker.execute(task);
+    }
+
+    private TableColumn<Integer, Object> column(String title, PacketTable.Column sortKey, IntFunction<Object> value) {
+        TableColumn<Integer, Object> column = new TableColumn<>(title);
+        column.setUserData(sortKey);
+        // a value is only created for visible cells
+        column.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(value.apply(cell.getValue())));
+        return column;
+    }
+
+    /**
+     * Read-only list of row indices, backed by an int array.
+     */
+    private static class RowList extends AbstractList<Integer> {
+        private final int[] rows;
+
+        RowList(int[] rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public Integer get(int index) {
+            return rows[index];
+        }
+
+        @Override
+        public int size() {
+            return rows.length;
+        }
+    }
 }
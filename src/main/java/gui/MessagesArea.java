@@ -1,41 +1,114 @@
 package gui;
 
+import control.MessageLog;
+import control.Messages;
+import javafx.animation.AnimationTimer;
+import javafx.scene.control.ListCell;
 import javafx.scene.control.ListView;
 
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
 /**
- * MessageArea represents a custom ListView for displaying messages.
- * It extends the JavaFX ListView class with a String type parameter.
+ * MessageArea represents a custom ListView for displaying the message history.
+ * It extends the JavaFX ListView class with the entries of a {@link MessageLog}.
+ *
+ * Messages can be posted from any thread into the log, and are shown once per frame by an AnimationTimer in one
+ * batched update. Equal consecutive messages are shown once with a repeat count, and only the newest
+ * {@link #HISTORY} entries are kept, so floods of messages from batch runs do not block the UI.
  *
  * @see ListView Represents a control that displays a scrollable list of items.
  * @see PackageCalculator Used for performing calculations related to packaging.
  */
-public class MessagesArea extends ListView<String> {
+public class MessagesArea extends ListView<MessageLog.Entry> {
+
+    /** Number of entries kept in the history. */
+    public static final int HISTORY = 1000;
+
+    private final MessageLog log = new MessageLog(4096);
+
+    public MessagesArea() {
+        SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss.SSS");
+        this.setCellFactory(list -> new ListCell<>() {
+            @Override
+            protected void updateItem(MessageLog.Entry entry, boolean empty) {
+                super.updateItem(entry, empty);
+                if (empty || entry == null) {
+                    setText(null);
+                    setStyle("");
+                    return;
+                }
+                setText(timeFormat.format(new Date(entry.timeMillis)) + "  " + entry.severity + "  " + entry.text
+                        + (entry.count > 1 ? "  (" + entry.count + "x)" : ""));
+                setStyle(switch (entry.severity) {
+                    case ERROR -> "-fx-text-fill: #c00000;";
+                    case WARNING -> "-fx-text-fill: #a06000;";
+                    default -> "";
+                });
+            }
+        });
+
+        new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                show(log.drain());
+            }
+        }.start();
+    }
+
     /**
-     * Sets an info text message in the MessagesArea and displays it to the user.
+     * @return the log to post messages to, from any thread.
+     */
+    public MessageLog getLog() {
+        return this.log;
+    }
+
+    /**
+     * Posts an info text message, it is displayed with the next frame.
      * @param text The text message to be displayed.
      */
     public void setMessage(String text) {
-        // Clear previous messages
-        this.getItems().clear();
-
-        // Add the new message
-        this.getItems().add(text);
+        log.add(Messages.Severity.INFO, text);
     }
 
     /**
-     * Retrieves the current message displayed in the MessagesArea.
+     * Retrieves the newest message displayed in the MessagesArea.
      * Returns null if no message is displayed.
      *
      * @return the message text, or null if no message is present
      */
     public String getMessage() {
-        return this.getItems().isEmpty() ? null : this.getItems().get(0);
+        return this.getItems().isEmpty() ? null : this.getItems().get(this.getItems().size() - 1).text;
     }
 
     /**
-     * Clears the message text from the MessagesArea and hides it.
+     * Clears the message history.
      */
     public void clearMessage() {
         this.getItems().clear();
     }
-}
\ No newline at end of file
+
+    private void show(List<MessageLog.Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        List<MessageLog.Entry> items = this.getItems();
+        int last = items.size() - 1;
+        if (last >= 0 && items.get(last).isRepeatedBy(entries.get(0))) {
+            items.set(last, items.get(last).coalesce(entries.remove(0)));
+        }
+        int overflow = items.size() + entries.size() - HISTORY;
+        if (overflow > 0) {
+            // replace everything at once instead of removing and adding
+            List<MessageLog.Entry> history = new ArrayList<>(HISTORY);
+            history.addAll(items.subList(Math.min(overflow, items.size()), items.size()));
+            history.addAll(entries.subList(Math.max(0, entries.size() - HISTORY), entries.size()));
+            this.getItems().setAll(history);
+        } else if (!entries.isEmpty()) {
+            this.getItems().addAll(entries);
+        }
+        this.scrollTo(this.getItems().size() - 1);
+    }
+}
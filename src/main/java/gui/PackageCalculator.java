@@ -1,6 +1,9 @@
 package gui;
 
+import control.Messages;
+import control.QuoteJournal;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Orientation;
 import javafx.geometry.Rectangle2D;
 import javafx.scene.Scene;
@@ -9,6 +12,8 @@ import javafx.scene.layout.BorderPane;
 import javafx.stage.Screen;
 import javafx.stage.Stage;
 
+import java.io.IOException;
+
 /**
  * The PackageCalculator class is the main class for the PackageCalculator application.
  * It sets up the GUI and initializes all the necessary components.
@@ -20,11 +25,18 @@ import javafx.stage.Stage;
  *      {@link MessagesArea} Represents the area for displaying messages and notifications.
  *      {@link StatusArea} Represents the area for displaying the status of the application.
  * Each area is responsible for a specific functionality in the application.
+ *
+ * To show the window as early as possible, the areas are built in {@link #start(Stage)} instead of when the
+ * application is instantiated, the InspectorArea only after the first frame, and the shipping costs are imported
+ * on the first calculation. With the system property {@value #EXIT_AFTER_STARTUP_PROPERTY} the application exits
+ * once it is fully built, which is used to measure the startup time and to train the class data sharing archive.
  */
 
 public class PackageCalculator extends Application {
 
 	public final static String APPNAME = "PackageCalculator";
+
+	public final static String EXIT_AFTER_STARTUP_PROPERTY = "packagecalculator.exitAfterStartup";
 	
 	// singleton
 	private static PackageCalculator instance;
@@ -32,12 +44,20 @@ public class PackageCalculator extends Application {
 		return instance;
 	}
 	
-    // gui areas
-	public ToolbarArea toolbarArea = new ToolbarArea();
-	public CalculatorArea editorArea = new CalculatorArea();;
-	public InspectorArea inspectorArea = new InspectorArea();
-	public MessagesArea messagesArea = new MessagesArea();
-	public StatusArea statusArea = new StatusArea();
+    // gui areas, built in start()
+	public ToolbarArea toolbarArea;
+	public CalculatorArea editorArea;
+	public MessagesArea messagesArea;
+	public StatusArea statusArea;
+
+	// built after the first frame or on first use
+	private InspectorArea inspectorArea;
+	public InspectorArea getInspectorArea() {
+		if (this.inspectorArea == null) {
+			this.inspectorArea = new InspectorArea();
+		}
+		return this.inspectorArea;
+	}
 	
 	// remember stage for subwindows
 	private Stage primaryStage;
@@ -45,6 +65,29 @@ public class PackageCalculator extends Application {
 		return this.primaryStage;
 	}
 
+	// audit journal of the calculated quotes, null if switched off in the settings
+	private QuoteJournal journal;
+	public QuoteJournal getJournal() {
+		return this.journal;
+	}
+
+	/**
+	 * Switches the quote journal, the previous one is closed.
+	 *
+	 * @param journal the new journal, or null to stop journaling
+	 */
+	public void setJournal(QuoteJournal journal) {
+		QuoteJournal previous = this.journal;
+		this.journal = journal;
+		if (previous != null) {
+			try {
+				previous.close();
+			} catch (IOException e) {
+				Messages.post(Messages.Severity.ERROR, "Could not close quote journal: " + e.getMessage());
+			}
+		}
+	}
+
 
 	/**
 	 * Start the application
@@ -58,11 +101,16 @@ public class PackageCalculator extends Application {
 		
 		// remember stage for subwindows
 		this.primaryStage = primaryStage;
+
+		toolbarArea = new ToolbarArea();
+		editorArea = new CalculatorArea();
+		messagesArea = new MessagesArea();
+		statusArea = new StatusArea();
+		Messages.setSink(messagesArea.getLog());
 		
-		// lr2SplitPane
+		// lr2SplitPane, the inspector is added after the first frame
 		SplitPane lr2SplitPane = new SplitPane();
-		lr2SplitPane.getItems().addAll(editorArea, inspectorArea);
-		lr2SplitPane.setDividerPositions(0.8f, 0.2f);
+		lr2SplitPane.getItems().add(editorArea);
 
 		// tdSplitPane
 		SplitPane tdSplitPane = new SplitPane();
@@ -83,6 +131,23 @@ public class PackageCalculator extends Application {
 		primaryStage.setTitle(APPNAME);
 		primaryStage.setScene(scene);
 		primaryStage.show();
+
+		Platform.runLater(() -> {
+			lr2SplitPane.getItems().add(getInspectorArea());
+			lr2SplitPane.setDividerPositions(0.8f, 0.2f);
+		});
+		if (Boolean.getBoolean(EXIT_AFTER_STARTUP_PROPERTY)) {
+			// runs after the inspector was added
+			Platform.runLater(Platform::exit);
+		}
+	}
+
+	/**
+	 * Writes the remaining journaled quotes before the application exits.
+	 */
+	@Override
+	public void stop() {
+		setJournal(null);
 	}
 
 	public static void main(String[] args) {
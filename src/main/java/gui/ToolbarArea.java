@@ -1,7 +1,15 @@
 package gui;
 
+import control.Messages;
+import control.QuoteJournal;
+import data.Project;
+import data.ProjectFile;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.Label;
 import javafx.scene.control.Separator;
 import javafx.scene.control.ToolBar;
 import javafx.scene.image.Image;
@@ -12,6 +20,7 @@ import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import java.io.File;
+import java.io.IOException;
 import javafx.scene.image.*;
 
 /**
@@ -25,7 +34,138 @@ import javafx.scene.image.*;
  */
 
 public class ToolbarArea extends ToolBar {
+
+	// file of the current project, null if it has not been saved yet
+	private File projectFile;
+	// directory of the quote journal, null if quotes are not journaled
+	private File journalDirectory;
+
+	private FileChooser projectChooser(String title) {
+		FileChooser fileChooser = new FileChooser();
+		fileChooser.setTitle(title);
+		fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Package Calculator Project", "*.pcp"));
+		if (projectFile != null) {
+			fileChooser.setInitialDirectory(projectFile.getParentFile());
+		}
+		return fileChooser;
+	}
+
+	private void openProject() {
+		PackageCalculator app = PackageCalculator.getInstance();
+		File file = projectChooser("Open Project").showOpenDialog(app.getPrimaryStage());
+		if (file == null) {
+			return;
+		}
+		app.statusArea.setText("Opening " + file.getName() + " ...");
+		// mapping and repricing a large project must not block the UI
+		Task<Project> task = new Task<>() {
+			@Override
+			protected Project call() throws IOException {
+				return ProjectFile.read(file.toPath());
+			}
+
+			@Override
+			protected void succeeded() {
+				Project project = getValue();
+				app.editorArea.setOptions(project.getCompany(), project.isExpress(), project.getVat(), project.isOptimize());
+				app.getInspectorArea().setProject(project);
+				projectFile = file;
+				app.statusArea.setText(file.getName() + ": " + project.getPackets().size() + " packets");
+			}
+
+			@Override
+			protected void failed() {
+				app.statusArea.setText("");
+				Messages.post(Messages.Severity.ERROR, "Could not open project: " + getException().getMessage());
+			}
+		};
+		Thread thread = new Thread(task, "open-project");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private void saveProject(boolean chooseFile) {
+		PackageCalculator app = PackageCalculator.getInstance();
+		File file = projectFile;
+		if (chooseFile || file == null) {
+			file = projectChooser("Save File as").showSaveDialog(app.getPrimaryStage());
+			if (file == null) {
+				return;
+			}
+		}
+		// save the options shown in the editor, the rows keep their quotes if those options still apply
+		CalculatorArea options = app.editorArea;
+		Project project = app.getInspectorArea().getProject().withOptions(options.getCompany(), options.isExpress(),
+				options.getVat(), options.isOptimize());
+		File target = file;
+		app.statusArea.setText("Saving " + target.getName() + " ...");
+		Task<Void> task = new Task<>() {
+			@Override
+			protected Void call() throws IOException {
+				ProjectFile.write(target.toPath(), project);
+				return null;
+			}
+
+			@Override
+			protected void succeeded() {
+				projectFile = target;
+				app.statusArea.setText(target.getName() + " saved");
+			}
+
+			@Override
+			protected void failed() {
+				app.statusArea.setText("");
+				Messages.post(Messages.Severity.ERROR, "Could not save project: " + getException().getMessage());
+			}
+		};
+		Thread thread = new Thread(task, "save-project");
+		thread.setDaemon(true);
+		thread.start();
+	}
 	
+	private void showSettingsDialog() {
+		PackageCalculator app = PackageCalculator.getInstance();
+		Stage dialog = new Stage();
+		dialog.initModality(Modality.APPLICATION_MODAL);
+		dialog.setTitle("Settings");
+
+		Label journalLabel = new Label(journalText());
+		Button chooseJournalButton = new Button("Choose journal directory");
+		Button journalOffButton = new Button("Journal off");
+		chooseJournalButton.setOnAction(e -> {
+			DirectoryChooser directoryChooser = new DirectoryChooser();
+			directoryChooser.setTitle("Quote journal directory");
+			if (journalDirectory != null) {
+				directoryChooser.setInitialDirectory(journalDirectory);
+			}
+			File directory = directoryChooser.showDialog(dialog);
+			if (directory == null) {
+				return;
+			}
+			try {
+				app.setJournal(new QuoteJournal(directory.toPath()));
+				journalDirectory = directory;
+			} catch (IOException ex) {
+				Messages.post(Messages.Severity.ERROR, "Could not open quote journal: " + ex.getMessage());
+			}
+			journalLabel.setText(journalText());
+		});
+		journalOffButton.setOnAction(e -> {
+			app.setJournal(null);
+			journalDirectory = null;
+			journalLabel.setText(journalText());
+		});
+
+		VBox vbox = new VBox(10, journalLabel, chooseJournalButton, journalOffButton);
+		vbox.setPadding(new Insets(10));
+		dialog.setScene(new Scene(vbox, 400, 150));
+		dialog.show();
+	}
+
+	private String journalText() {
+		return "Quote journal: " + (journalDirectory == null ? "off" : journalDirectory.getPath());
+	}
+
 	private void showInfoDialog() {
 		Stage dialog = new Stage();
         dialog.initModality(Modality.APPLICATION_MODAL);
@@ -49,10 +189,14 @@ public class ToolbarArea extends ToolBar {
 		Button exitButton = new Button("Exit");
 
 		// actionlisteners
-		// openProjectButton.setOnAction(e -> openProject());
+		openProjectButton.setOnAction(e -> openProject());
 		// newFileButton.setOnAction(e -> newFile());
+		settingsButton.setOnAction(e -> showSettingsDialog());
+		saveFileButton.setOnAction(e -> saveProject(false));
+		saveFileAsButton.setOnAction(e -> saveProject(true));
 		infoButton.setOnAction(e -> showInfoDialog());
-		exitButton.setOnAction(e -> System.exit(0));
+		// exit through the application, so the quote journal is written completely
+		exitButton.setOnAction(e -> Platform.exit());
 
 		// add all buttons
 		this.getItems().add(openProjectButton);
@@ -0,0 +1,102 @@
+package control;
+
+import data.Utils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchRunnerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path writeManifest(int lines) throws IOException {
+        Random random = new Random(42);
+        List<String> manifest = new ArrayList<>();
+        for (int i = 0; i < lines; i++) {
+            manifest.add((random.nextInt(1200) + 1) + ";" + (random.nextInt(600) + 1) + ";"
+                    + (random.nextInt(600) + 1) + ";" + (random.nextInt(31500) + 1));
+        }
+        manifest.add("not;a;packet;line");
+        Path file = tempDir.resolve("manifest.csv");
+        Files.write(file, manifest);
+        return file;
+    }
+
+    @Test
+    public void splitStartsShardsAtLineBoundaries() throws IOException {
+        Path manifest = writeManifest(100);
+        byte[] content = Files.readAllBytes(manifest);
+        long[] bounds = BatchRunner.split(manifest, 7);
+
+        assertEquals(0, bounds[0]);
+        assertEquals(content.length, bounds[bounds.length - 1]);
+        for (int i = 1; i < bounds.length - 1; i++) {
+            assertEquals('\n', content[(int) bounds[i] - 1]);
+            assertTrue(bounds[i] > bounds[i - 1]);
+        }
+    }
+
+    @Test
+    public void resultsKeepInputOrder() throws IOException {
+        Path manifest = writeManifest(500);
+        List<String> input = Files.readAllLines(manifest);
+        Path output = tempDir.resolve("threads.csv");
+
+        BatchRunner runner = new BatchRunner(new BatchRunner.Options(Utils.Company.DHL, false, 0, false), 4);
+        runner.setUseProcesses(false);
+        QuoteStatistics statistics = runner.run(manifest, output);
+
+        List<String> result = Files.readAllLines(output);
+        assertEquals(input.size(), result.size());
+        for (int i = 0; i < input.size(); i++) {
+            assertTrue(result.get(i).startsWith(input.get(i) + ";DHL;"));
+        }
+        assertEquals(500, statistics.getQuoteCount());
+        assertEquals(1, statistics.getRejectionCount());
+    }
+
+    @Test
+    public void processesAndThreadsAgree() throws IOException {
+        Path manifest = writeManifest(200);
+        Path threads = tempDir.resolve("threads.csv");
+        Path processes = tempDir.resolve("processes.csv");
+        BatchRunner.Options options = new BatchRunner.Options(Utils.Company.HERMES, true, 0.19, false);
+
+        BatchRunner threadRunner = new BatchRunner(options, 3);
+        threadRunner.setUseProcesses(false);
+        QuoteStatistics threadStatistics = threadRunner.run(manifest, threads);
+        QuoteStatistics processStatistics = new BatchRunner(options, 3).run(manifest, processes);
+
+        assertEquals(Files.readAllLines(threads), Files.readAllLines(processes));
+        assertEquals(threadStatistics.report(), processStatistics.report());
+    }
+
+    @Test
+    public void journalRecordsEveryQuote() throws IOException {
+        Path manifest = writeManifest(300);
+        Path journalDirectory = tempDir.resolve("journal");
+        BatchRunner runner = new BatchRunner(new BatchRunner.Options(Utils.Company.DHL, false, 0, false), 3);
+        QuoteStatistics statistics;
+        try (QuoteJournal journal = new QuoteJournal(journalDirectory)) {
+            runner.setJournal(journal);
+            statistics = runner.run(manifest, tempDir.resolve("output.csv"));
+        }
+
+        List<QuoteJournal.Entry> entries = new ArrayList<>();
+        try (var segments = Files.list(journalDirectory)) {
+            for (Path segment : (Iterable<Path>) segments.sorted()::iterator) {
+                QuoteJournal.read(segment, entries::add);
+            }
+        }
+        assertEquals(statistics.getQuoteCount(), entries.size());
+    }
+}
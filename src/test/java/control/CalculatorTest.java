@@ -33,6 +33,19 @@ public class CalculatorTest {
         }
     }
 
+    @Test
+    public void quoteReturnsTierAndPrice() {
+        Packet packet = new Packet(500, 200, 100, 1500);
+        Calculator.TierPrice quote = calculator.quote(packet, true, 0.19, false, null);
+        assertEquals(calculator.classify(packet), quote.tier);
+        assertEquals(calculator.calcShippingCosts(packet, true, 0.19), quote.price);
+
+        // standing the parcel is large, lying down it fits into medium
+        Calculator.TierPrice optimized = calculator.quote(new Packet(100, 100, 400, 500), true, 0.19, true, null);
+        assertEquals(1, optimized.tier);
+        assertEquals(calculator.getTierPrice(1), optimized.price);
+    }
+
     private double testCalcShippingCosts(int length, int width, int height, int weight) {
 
         List<Double> shippingCosts = new ArrayList<>(); // Default: DHL
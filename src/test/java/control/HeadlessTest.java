@@ -0,0 +1,51 @@
+package control;
+
+import data.Packet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HeadlessTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void pricesWithoutLoadingJavaFX() throws IOException, InterruptedException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        Path classLog = tempDir.resolve("classes.log");
+        Process process = new ProcessBuilder(java, "-Xlog:class+load=info:file=" + classLog,
+                "-cp", System.getProperty("java.class.path"),
+                Headless.class.getName(), "500", "200", "100", "1500", "--carrier", "hermes")
+                .redirectErrorStream(true)
+                .start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertEquals(0, process.waitFor(), output);
+
+        assertTrue(output.contains("HERMES;1;4.19"), output);
+        String classes = Files.readString(classLog);
+        assertTrue(classes.contains("control.Headless"));
+        assertFalse(classes.contains("javafx."), "JavaFX was loaded");
+        assertFalse(classes.contains(" gui."), "the GUI was loaded");
+    }
+
+    @Test
+    public void messagesGoToTheSink() {
+        List<String> messages = new ArrayList<>();
+        Messages.setSink((severity, text) -> messages.add(severity + " " + text));
+        try {
+            assertThrows(AssertionError.class, () -> new Packet(1300, 100, 100, 100));
+            assertEquals(List.of("ERROR Wrong dimensions"), messages);
+        } finally {
+            Messages.setSink(null);
+        }
+    }
+}
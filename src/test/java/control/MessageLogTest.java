@@ -0,0 +1,74 @@
+package control;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageLogTest {
+
+    @Test
+    public void equalMessagesAreCoalesced() {
+        MessageLog log = new MessageLog(16);
+        log.add(Messages.Severity.INFO, "Best rotation");
+        log.add(Messages.Severity.INFO, "Best rotation");
+        log.add(Messages.Severity.ERROR, "Wrong dimensions");
+        log.add(Messages.Severity.INFO, "Best rotation");
+
+        List<MessageLog.Entry> entries = log.drain();
+        assertEquals(3, entries.size());
+        assertEquals("Best rotation", entries.get(0).text);
+        assertEquals(2, entries.get(0).count);
+        assertEquals(Messages.Severity.ERROR, entries.get(1).severity);
+        assertEquals(1, entries.get(2).count);
+        assertTrue(log.drain().isEmpty());
+    }
+
+    @Test
+    public void fullLogDropsAndReports() {
+        MessageLog log = new MessageLog(4);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i < 4, log.add(Messages.Severity.INFO, "message " + i));
+        }
+        List<MessageLog.Entry> entries = log.drain();
+        assertEquals(5, entries.size());
+        assertEquals("message 3", entries.get(3).text);
+        assertEquals(Messages.Severity.WARNING, entries.get(4).severity);
+        assertEquals("6 messages dropped", entries.get(4).text);
+        // the slots are free again
+        assertTrue(log.add(Messages.Severity.INFO, "again"));
+    }
+
+    @Test
+    public void concurrentProducersKeepTheirOrder() throws InterruptedException {
+        MessageLog log = new MessageLog(1 << 16);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            String producer = "producer " + t + ": ";
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    log.add(Messages.Severity.INFO, producer + i);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+
+        List<MessageLog.Entry> entries = new ArrayList<>();
+        while (threads.stream().anyMatch(Thread::isAlive)) {
+            entries.addAll(log.drain());
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        entries.addAll(log.drain());
+
+        assertEquals(40_000, entries.size());
+        int[] next = new int[4];
+        for (MessageLog.Entry entry : entries) {
+            int producer = entry.text.charAt(9) - '0';
+            assertEquals("producer " + producer + ": " + next[producer]++, entry.text);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package control;
+
+import data.ImportHandler;
+import data.PackageCostOptimizer;
+import data.Packet;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PricingEventsTest {
+
+    @TempDir
+    Path tempDir;
+
+    private List<RecordedEvent> events(List<RecordedEvent> events, String name) {
+        return events.stream().filter(e -> e.getEventType().getName().equals(name)).collect(Collectors.toList());
+    }
+
+    @Test
+    public void pricingIsRecorded() throws IOException {
+        Path tariff = tempDir.resolve("shippingCosts.csv");
+        Files.writeString(tariff, "DHL;3.89;4.39;5.99;7.99;14.99;Hermes;3.69;4.19;5.79;6.99;10.99;");
+        Path dump = tempDir.resolve("recording.jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable(QuoteEvent.class).withThreshold(Duration.ZERO);
+            recording.enable(OptimizeEvent.class).withThreshold(Duration.ZERO);
+            recording.enable(TariffLoadEvent.class);
+            recording.start();
+
+            Calculator calculator = new Calculator(new ImportHandler(tariff));
+            calculator.calcShippingCosts(new Packet(500, 200, 100, 1500), false, 0);
+            new PackageCostOptimizer(new Packet(100, 100, 100, 500), calculator).optimizeCosts();
+
+            recording.stop();
+            recording.dump(dump);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+
+        List<RecordedEvent> loads = events(events, "packagecalculator.TariffLoad");
+        assertEquals(1, loads.size());
+        assertEquals(tariff.toString(), loads.get(0).getString("file"));
+        assertEquals(1, loads.get(0).getInt("rows"));
+        assertEquals(10, loads.get(0).getInt("prices"));
+
+        List<RecordedEvent> quotes = events(events, "packagecalculator.Quote");
+        assertEquals(1, quotes.size());
+        assertEquals("DHL", quotes.get(0).getString("carrier"));
+        assertEquals(1, quotes.get(0).getInt("tier"));
+
+        List<RecordedEvent> searches = events(events, "packagecalculator.Optimize");
+        assertEquals(1, searches.size());
+        assertTrue(searches.get(0).getInt("candidates") >= 20 * 20 * 20);
+        assertEquals(0, searches.get(0).getInt("bestTier"));
+        assertFalse(searches.get(0).getString("bestRotation").isEmpty());
+        assertFalse(searches.get(0).getDuration().isNegative());
+    }
+}
@@ -0,0 +1,93 @@
+package control;
+
+import data.Packet;
+import data.Utils;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QuoteAggregatorTest {
+
+    @Test
+    public void quotesAndRejectionsAreCounted() {
+        Calculator calculator = new Calculator();
+        QuoteAggregator aggregator = new QuoteAggregator();
+        calculator.setAggregator(aggregator);
+
+        calculator.calcShippingCosts(new Packet(100, 100, 100, 500), false, 0);
+        calculator.calcShippingCosts(new Packet(500, 200, 100, 1500), false, 0);
+        calculator.setShippingChoice(Utils.Company.HERMES);
+        calculator.calcShippingCosts(new Packet(100, 100, 100, 500), false, 0);
+        aggregator.recordRejection("Wrong dimensions");
+
+        QuoteStatistics statistics = aggregator.snapshot();
+        assertEquals(3, statistics.getQuoteCount());
+        assertEquals(1, statistics.getRejectionCount());
+        assertEquals(1, statistics.getTierCount(Utils.Company.DHL, 0));
+        assertEquals(1, statistics.getTierCount(Utils.Company.DHL, 1));
+        assertEquals(1, statistics.getTierCount(Utils.Company.HERMES, 0));
+        assertEquals(3.89, statistics.getTierRevenue(Utils.Company.DHL, 0), 0.001);
+        assertEquals(2, statistics.getWeightHistogram()[0]);
+        assertEquals(1, statistics.getWeightHistogram()[1]);
+        assertEquals(1L, statistics.getRejections().get("Wrong dimensions"));
+    }
+
+    @Test
+    public void threadsAreMerged() throws InterruptedException {
+        QuoteAggregator aggregator = new QuoteAggregator();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                Calculator calculator = new Calculator();
+                calculator.setAggregator(aggregator);
+                for (int i = 0; i < 1000; i++) {
+                    calculator.calcShippingCosts(new Packet(100, 100, 100, 500), false, 0);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        QuoteStatistics statistics = aggregator.snapshot();
+        assertEquals(4000, statistics.getTierCount(Utils.Company.DHL, 0));
+        assertEquals(4000 * 3.89, statistics.getTierRevenue(Utils.Company.DHL, 0), 0.01);
+    }
+
+    @Test
+    public void snapshotsCanBeTakenWhileRecording() throws InterruptedException {
+        QuoteAggregator aggregator = new QuoteAggregator();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                Calculator calculator = new Calculator();
+                calculator.setAggregator(aggregator);
+                for (int i = 0; i < 20_000; i++) {
+                    calculator.calcShippingCosts(new Packet(100, 100, 100, 500), false, 0);
+                    // many reasons keep the rejection map rebalancing
+                    aggregator.recordRejection("reason " + i % 500);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        long last = 0;
+        while (threads.stream().anyMatch(Thread::isAlive)) {
+            QuoteStatistics statistics = aggregator.snapshot();
+            assertTrue(statistics.getQuoteCount() >= last);
+            last = statistics.getQuoteCount();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        QuoteStatistics statistics = aggregator.snapshot();
+        assertEquals(80_000, statistics.getQuoteCount());
+        assertEquals(80_000, statistics.getRejectionCount());
+    }
+}
@@ -0,0 +1,150 @@
+package control;
+
+import data.PackageCostOptimizer;
+import data.Packet;
+import data.Utils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QuoteJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    private List<QuoteJournal.Entry> readAll() throws IOException {
+        List<QuoteJournal.Entry> entries = new ArrayList<>();
+        try (Stream<Path> files = Files.list(tempDir)) {
+            for (Path segment : files.sorted().collect(Collectors.toList())) {
+                QuoteJournal.read(segment, entries::add);
+            }
+        }
+        return entries;
+    }
+
+    @Test
+    public void quotesAreJournaled() throws IOException {
+        Calculator calculator = new Calculator();
+        try (QuoteJournal journal = new QuoteJournal(tempDir)) {
+            calculator.setJournal(journal);
+            double costs = calculator.calcShippingCosts(new Packet(500, 200, 100, 1500), true, 0.19);
+            calculator.setShippingChoice(Utils.Company.HERMES);
+            new PackageCostOptimizer(new Packet(100, 100, 100, 500), calculator).optimizeCosts();
+
+            journal.flush();
+            List<QuoteJournal.Entry> entries = readAll();
+            assertEquals(2, entries.size());
+
+            QuoteJournal.Entry entry = entries.get(0);
+            assertEquals(Utils.Company.DHL, entry.company);
+            assertEquals(1, entry.tier);
+            assertEquals(500, entry.length);
+            assertEquals(200, entry.width);
+            assertEquals(100, entry.height);
+            assertEquals(1500, entry.weight);
+            assertTrue(entry.express);
+            assertFalse(entry.optimized);
+            assertEquals(0.19, entry.vat, 1e-9);
+            assertEquals(costs, entry.price);
+            assertEquals(calculator.getTariffVersion(), entry.tariffVersion);
+
+            assertEquals(Utils.Company.HERMES, entries.get(1).company);
+            assertTrue(entries.get(1).optimized);
+        }
+    }
+
+    @Test
+    public void vatRoundTrips() throws IOException {
+        Packet packet = new Packet(100, 100, 100, 500);
+        try (QuoteJournal journal = new QuoteJournal(tempDir)) {
+            journal.record(Utils.Company.DHL, 0, packet, false, 0.07, false, 1, 42);
+            journal.record(Utils.Company.DHL, 0, packet, false, -0.05, false, 1, 42);
+            assertThrows(IllegalArgumentException.class,
+                    () -> journal.record(Utils.Company.DHL, 0, packet, false, 1e6, false, 1, 42));
+        }
+        List<QuoteJournal.Entry> entries = readAll();
+        assertEquals(2, entries.size());
+        assertEquals(0.07, entries.get(0).vat, 1e-9);
+        assertEquals(-0.05, entries.get(1).vat, 1e-9);
+    }
+
+    @Test
+    public void segmentsRollOverAndNothingIsLostOnClose() throws IOException, InterruptedException {
+        // a tiny ring forces producers to wait for the writer, small segments force rollovers
+        QuoteJournal journal = new QuoteJournal(tempDir, 16, 16 + 100 * QuoteJournal.RECORD_SIZE,
+                QuoteJournal.FsyncPolicy.NEVER, 0);
+        Packet packet = new Packet(100, 100, 100, 500);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    journal.record(Utils.Company.DHL, 0, packet, false, 0, false, i, 42);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        journal.close();
+
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(40, files.count());
+        }
+        List<QuoteJournal.Entry> entries = readAll();
+        assertEquals(4000, entries.size());
+        assertEquals(4 * 999 * 1000 / 2, entries.stream().mapToDouble(e -> e.price).sum());
+        assertTrue(entries.stream().allMatch(e -> e.tariffVersion == 42));
+
+        // a reopened journal appends a new segment instead of overwriting
+        try (QuoteJournal reopened = new QuoteJournal(tempDir)) {
+            reopened.record(Utils.Company.DHL, 0, packet, false, 0, false, 1, 42);
+        }
+        assertEquals(4001, readAll().size());
+    }
+
+    @Test
+    public void closeWithWaitingProducersWritesEveryRecordedQuote() throws IOException {
+        QuoteJournal journal = new QuoteJournal(tempDir, 2, 1 << 20, QuoteJournal.FsyncPolicy.NEVER, 0);
+        Packet packet = new Packet(100, 100, 100, 500);
+        AtomicInteger recorded = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(new Thread(() -> {
+                try {
+                    while (true) {
+                        journal.record(Utils.Company.DHL, 0, packet, false, 0, false, 1, 42);
+                        recorded.incrementAndGet();
+                    }
+                } catch (IllegalStateException e) {
+                    // closed
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            while (recorded.get() < 1000) {
+                Thread.onSpinWait();
+            }
+            journal.close();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        });
+        assertThrows(IllegalStateException.class,
+                () -> journal.record(Utils.Company.DHL, 0, packet, false, 0, false, 1, 42));
+        assertEquals(recorded.get(), readAll().size());
+    }
+}
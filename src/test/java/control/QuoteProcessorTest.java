@@ -0,0 +1,159 @@
+package control;
+
+import data.Packet;
+import data.Utils;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QuoteProcessorTest {
+
+    /**
+     * Requests quotes in small steps and checks that it never receives more than it asked for.
+     */
+    private static class SteppingSubscriber implements Flow.Subscriber<Quote> {
+        final List<Quote> quotes = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicLong outstanding = new AtomicLong();
+        volatile boolean overflow;
+        volatile Throwable error;
+        Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            outstanding.set(3);
+            subscription.request(3);
+        }
+
+        @Override
+        public void onNext(Quote quote) {
+            quotes.add(quote);
+            if (outstanding.decrementAndGet() < 0) {
+                overflow = true;
+            }
+            if (outstanding.get() == 0) {
+                outstanding.set(3);
+                subscription.request(3);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+    }
+
+    @Test
+    public void quotesArriveInOrderWithBackpressure() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        QuoteProcessor processor = new QuoteProcessor(executor, 8, 4);
+        SteppingSubscriber subscriber = new SteppingSubscriber();
+        processor.subscribe(subscriber);
+
+        List<QuoteRequest> requests = new ArrayList<>();
+        try (SubmissionPublisher<QuoteRequest> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(processor);
+            for (int i = 1; i <= 500; i++) {
+                QuoteRequest request = new QuoteRequest(new Packet(i, 100, 100, i * 10),
+                        i % 2 == 0 ? Utils.Company.DHL : Utils.Company.HERMES, i % 3 == 0, 0, i % 100 == 0);
+                requests.add(request);
+                publisher.submit(request);
+            }
+        }
+
+        assertTrue(subscriber.done.await(30, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertNull(subscriber.error);
+        assertFalse(subscriber.overflow);
+        assertEquals(requests.size(), subscriber.quotes.size());
+
+        Calculator calculator = new Calculator();
+        for (int i = 0; i < requests.size(); i++) {
+            Quote quote = subscriber.quotes.get(i);
+            QuoteRequest request = requests.get(i);
+            assertSame(request, quote.request);
+            assertFalse(quote.isRejected());
+            if (!request.optimize) {
+                calculator.setShippingChoice(request.company);
+                assertEquals(calculator.calcShippingCosts(request.packet, request.express, request.vat), quote.price);
+            }
+        }
+    }
+
+    @Test
+    public void secondSubscriberIsRejected() throws InterruptedException {
+        QuoteProcessor processor = new QuoteProcessor();
+        processor.subscribe(new SteppingSubscriber());
+        SteppingSubscriber second = new SteppingSubscriber();
+        processor.subscribe(second);
+
+        assertTrue(second.done.await(1, TimeUnit.SECONDS));
+        assertTrue(second.error instanceof IllegalStateException);
+    }
+
+    @Test
+    public void rejectedBatchesAreDeliveredWithTheError() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        QuoteProcessor processor = new QuoteProcessor(executor, 8, 4);
+        SteppingSubscriber subscriber = new SteppingSubscriber();
+        processor.subscribe(subscriber);
+
+        try (SubmissionPublisher<QuoteRequest> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(processor);
+            publisher.submit(new QuoteRequest(new Packet(100, 100, 100, 500), Utils.Company.DHL, false, 0, false));
+        }
+
+        assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+        assertTrue(subscriber.error instanceof RejectedExecutionException);
+        assertEquals(1, subscriber.quotes.size());
+        assertTrue(subscriber.quotes.get(0).isRejected());
+    }
+
+    @Test
+    public void optimizedBatchesStayWithinTheInFlightLimit() throws InterruptedException {
+        Queue<Runnable> tasks = new ArrayDeque<>();
+        QuoteProcessor processor = new QuoteProcessor(tasks::add, 8, 2);
+        SteppingSubscriber subscriber = new SteppingSubscriber();
+        processor.subscribe(subscriber);
+        processor.onSubscribe(new Flow.Subscription() {
+            public void request(long n) { }
+            public void cancel() { }
+        });
+
+        for (int i = 1; i <= 40; i++) {
+            processor.onNext(new QuoteRequest(new Packet(i * 5, 100, 100, 500), Utils.Company.DHL, false, 0, true));
+            assertTrue(tasks.size() <= 2);
+        }
+        processor.onComplete();
+        while (!tasks.isEmpty()) {
+            assertTrue(tasks.size() <= 2);
+            tasks.poll().run();
+        }
+
+        assertTrue(subscriber.done.await(1, TimeUnit.SECONDS));
+        assertNull(subscriber.error);
+        assertEquals(40, subscriber.quotes.size());
+    }
+}
@@ -0,0 +1,78 @@
+package data;
+
+import control.Calculator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OffHeapQuoteStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void putAndGet() {
+        OffHeapQuoteStore store = OffHeapQuoteStore.allocate(1000);
+        long key = OffHeapQuoteStore.key(Utils.Company.DHL, false, 1200, 600, 600, 31500);
+
+        assertTrue(Double.isNaN(store.get(key)));
+        assertEquals(Calculator.REJECTED, store.getTier(key));
+
+        assertTrue(store.put(key, 4, 14.99));
+        assertEquals(14.99, store.get(key));
+        assertEquals(4, store.getTier(key));
+        assertTrue(Double.isNaN(store.get(OffHeapQuoteStore.key(Utils.Company.HERMES, false, 1200, 600, 600, 31500))));
+        assertTrue(Double.isNaN(store.get(OffHeapQuoteStore.key(Utils.Company.DHL, true, 1200, 600, 600, 31500))));
+    }
+
+    @Test
+    public void refusesNewKeysWhenFull() {
+        OffHeapQuoteStore store = OffHeapQuoteStore.allocate(10);
+        int added = 0;
+        for (int weight = 0; weight < store.capacity(); weight++) {
+            if (store.put(OffHeapQuoteStore.key(Utils.Company.DHL, false, 1, 1, 1, weight), 0, weight)) {
+                added++;
+            }
+        }
+        assertEquals(store.size(), added);
+        assertTrue(added < store.capacity());
+        for (int weight = 0; weight < added; weight++) {
+            assertEquals(weight, store.get(OffHeapQuoteStore.key(Utils.Company.DHL, false, 1, 1, 1, weight)));
+        }
+    }
+
+    @Test
+    public void mappedStoreSurvivesReopen() throws IOException {
+        Path file = tempDir.resolve("quotes.bin");
+        long key = OffHeapQuoteStore.key(Utils.Company.HERMES, true, 100, 200, 300, 400);
+        try (OffHeapQuoteStore store = OffHeapQuoteStore.open(file, 1000, 42)) {
+            store.put(key, 2, 5.79);
+        }
+        try (OffHeapQuoteStore store = OffHeapQuoteStore.open(file, 1000, 42)) {
+            assertEquals(1, store.size());
+            assertEquals(5.79, store.get(key));
+        }
+        // other tariff version invalidates the content
+        try (OffHeapQuoteStore store = OffHeapQuoteStore.open(file, 1000, 43)) {
+            assertEquals(0, store.size());
+            assertTrue(Double.isNaN(store.get(key)));
+        }
+    }
+
+    @Test
+    public void optimizerUsesStore() {
+        OffHeapQuoteStore store = OffHeapQuoteStore.allocate(100);
+        Packet packet = new Packet(200, 200, 100, 500);
+        PackageCostOptimizer optimizer = new PackageCostOptimizer(packet);
+        optimizer.setQuoteStore(store);
+
+        double costs = optimizer.optimizeCosts();
+        assertEquals(1, store.size());
+        assertEquals(costs, store.get(OffHeapQuoteStore.key(Utils.Company.DHL, true, packet)));
+        assertEquals(costs, optimizer.optimizeCosts());
+    }
+}
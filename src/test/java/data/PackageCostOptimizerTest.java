@@ -0,0 +1,33 @@
+package data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PackageCostOptimizerTest {
+
+    @Test
+    public void cancelledSearchIsNotStored() {
+        OffHeapQuoteStore store = OffHeapQuoteStore.allocate(100);
+        Packet packet = new Packet(700, 200, 100, 1500);
+        PackageCostOptimizer optimizer = new PackageCostOptimizer(packet);
+        optimizer.setQuoteStore(store);
+
+        List<Double> progress = new ArrayList<>();
+        optimizer.setProgress((bestTier, bestCosts, done) -> {
+            progress.add(done);
+            return done < 0.5;
+        });
+        assertThrows(CancellationException.class, optimizer::optimizeCosts);
+        assertEquals(0.5, progress.get(progress.size() - 1));
+        assertEquals(0, store.size());
+
+        optimizer.setProgress((bestTier, bestCosts, done) -> true);
+        double costs = optimizer.optimizeCosts();
+        assertEquals(costs, store.get(OffHeapQuoteStore.key(Utils.Company.DHL, true, packet)));
+    }
+}
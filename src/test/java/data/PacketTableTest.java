@@ -0,0 +1,75 @@
+package data;
+
+import control.Calculator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PacketTableTest {
+
+    @TempDir
+    Path tempDir;
+
+    private PacketTable createTable() {
+        PacketTable table = new PacketTable(2);
+        table.add(100, 100, 100, 500, Utils.Company.DHL, 0, 3.89);
+        table.add(1200, 600, 600, 20000, Utils.Company.HERMES, 4, 10.99);
+        table.add(500, 200, 100, 1500, Utils.Company.DHL, 1, 4.39);
+        table.add(0, 0, 0, 0, Utils.Company.DHL, Calculator.REJECTED, Double.NaN);
+        return table;
+    }
+
+    @Test
+    public void growsBeyondInitialCapacity() {
+        PacketTable table = createTable();
+        assertEquals(4, table.size());
+        assertEquals(1200, table.getLength(1));
+        assertEquals(Utils.Company.HERMES, table.getCompany(1));
+        assertEquals(4.39, table.getPrice(2));
+        assertEquals(Calculator.REJECTED, table.getTier(3));
+    }
+
+    @Test
+    public void sortsByColumn() {
+        PacketTable table = createTable();
+        assertArrayEquals(new int[]{0, 2, 1, 3}, table.sortedRows(PacketTable.Column.PRICE, true));
+        // the rejected row without a price stays last
+        assertArrayEquals(new int[]{1, 2, 0, 3}, table.sortedRows(PacketTable.Column.PRICE, false));
+        assertArrayEquals(new int[]{3, 0, 2, 1}, table.sortedRows(PacketTable.Column.TIER, true));
+        // equal keys keep their order
+        assertArrayEquals(new int[]{1, 0, 2, 3}, table.sortedRows(PacketTable.Column.CARRIER, true));
+    }
+
+    @Test
+    public void selectsByFilter() {
+        PacketTable table = createTable();
+        assertArrayEquals(new int[]{0, 1, 2, 3}, table.select(null, null, null, Double.POSITIVE_INFINITY));
+        assertArrayEquals(new int[]{0, 2, 3}, table.select(null, Utils.Company.DHL, null, Double.POSITIVE_INFINITY));
+        assertArrayEquals(new int[]{3}, table.select(null, null, Calculator.REJECTED, Double.POSITIVE_INFINITY));
+        assertArrayEquals(new int[]{2, 0}, table.select(new int[]{2, 1, 0, 3}, null, null, 5));
+    }
+
+    @Test
+    public void loadsBatchOutput() throws IOException {
+        Path file = tempDir.resolve("priced.csv");
+        Files.write(file, List.of(
+                "100;100;100;500;DHL;0;3.89",
+                "1300;700;700;10000;HERMES;-1;NaN;Wrong dimensions",
+                "not;a;packet;line;DHL;-1;NaN;Invalid line"));
+
+        PacketTable table = PacketTable.load(file);
+        assertEquals(3, table.size());
+        assertEquals(3.89, table.getPrice(0));
+        assertEquals(1300, table.getLength(1));
+        assertEquals(Utils.Company.HERMES, table.getCompany(1));
+        assertEquals(Calculator.REJECTED, table.getTier(1));
+        assertEquals(0, table.getLength(2));
+        assertTrue(Double.isNaN(table.getPrice(2)));
+    }
+}
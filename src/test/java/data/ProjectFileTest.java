@@ -0,0 +1,85 @@
+package data;
+
+import control.Calculator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProjectFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void writeAndReadRoundTrip() throws IOException {
+        PacketTable packets = new PacketTable();
+        for (int i = 0; i < 100_000; i++) {
+            packets.add(1 + i % 1200, 1 + i % 600, 1 + i % 600, i % 31500,
+                    i % 2 == 0 ? Utils.Company.DHL : Utils.Company.HERMES, PacketTable.UNPRICED, Double.NaN);
+        }
+        packets.setQuote(0, 0, 3.89);
+        Project project = new Project(packets, Utils.Company.HERMES, true, 0.19, false);
+
+        Path file = tempDir.resolve("project.pcp");
+        ProjectFile.write(file, project);
+        assertEquals(128 + 100_000 * 26, Files.size(file));
+
+        Project read = ProjectFile.read(file);
+        assertEquals(Utils.Company.HERMES, read.getCompany());
+        assertTrue(read.isExpress());
+        assertEquals(0.19, read.getVat());
+        assertFalse(read.isOptimize());
+
+        PacketTable readPackets = read.getPackets();
+        assertEquals(packets.size(), readPackets.size());
+        for (int row = 0; row < packets.size(); row += 997) {
+            assertEquals(packets.getLength(row), readPackets.getLength(row));
+            assertEquals(packets.getWidth(row), readPackets.getWidth(row));
+            assertEquals(packets.getHeight(row), readPackets.getHeight(row));
+            assertEquals(packets.getWeight(row), readPackets.getWeight(row));
+            assertEquals(packets.getCompany(row), readPackets.getCompany(row));
+        }
+        // cached quote is kept, the others are priced on access
+        assertEquals(3.89, readPackets.getPrice(0));
+        assertEquals(PacketTable.UNPRICED, readPackets.getTier(1));
+
+        Calculator calculator = new Calculator();
+        calculator.setShippingChoice(Utils.Company.HERMES);
+        Packet packet = new Packet(2, 2, 2, 1);
+        assertEquals(calculator.calcShippingCosts(packet, true, 0.19), read.getPrice(1));
+        assertEquals(0, read.getTier(1));
+    }
+
+    @Test
+    public void rejectsOtherFiles() throws IOException {
+        Path file = tempDir.resolve("other.pcp");
+        Files.write(file, new byte[100]);
+        assertThrows(IOException.class, () -> ProjectFile.read(file));
+    }
+
+    @Test
+    public void rejectsCorruptHeaders() throws IOException {
+        PacketTable packets = new PacketTable();
+        packets.add(100, 100, 100, 500, Utils.Company.DHL, PacketTable.UNPRICED, Double.NaN);
+        Path file = tempDir.resolve("project.pcp");
+        ProjectFile.write(file, new Project(packets, Utils.Company.DHL, false, 0, false));
+        byte[] content = Files.readAllBytes(file);
+
+        // unknown carrier
+        byte[] carrier = content.clone();
+        carrier[12] = 7;
+        Files.write(file, carrier);
+        assertTrue(assertThrows(IOException.class, () -> ProjectFile.read(file)).getMessage().contains("carrier"));
+
+        // row count beyond the file
+        byte[] rows = content.clone();
+        rows[8] = 2;
+        Files.write(file, rows);
+        assertTrue(assertThrows(IOException.class, () -> ProjectFile.read(file)).getMessage().contains("rows"));
+    }
+}
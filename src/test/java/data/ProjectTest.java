@@ -0,0 +1,152 @@
+package data;
+
+import control.Calculator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProjectTest {
+
+    @TempDir
+    Path tempDir;
+
+    private PacketTable createPackets(int rows) {
+        PacketTable packets = new PacketTable();
+        for (int i = 0; i < rows; i++) {
+            packets.add(1 + i * 37 % 1300, 1 + i * 11 % 650, 1 + i * 7 % 650, 1 + i * 997 % 32000,
+                    i % 3 == 0 ? Utils.Company.HERMES : Utils.Company.DHL, PacketTable.UNPRICED, Double.NaN);
+        }
+        return packets;
+    }
+
+    private ImportHandler tariff(String line) throws IOException {
+        Path file = tempDir.resolve("shippingCosts.csv");
+        Files.writeString(file, line);
+        return new ImportHandler(file);
+    }
+
+    private void assertSameQuotes(Project expected, Project actual) {
+        for (int row = 0; row < expected.getPackets().size(); row++) {
+            assertEquals(expected.getTier(row), actual.getTier(row), "tier of row " + row);
+            assertEquals(expected.getPrice(row), actual.getPrice(row), "price of row " + row);
+        }
+    }
+
+    @Test
+    public void indexGroupsRowsByCarrierAndTier() {
+        PacketTable packets = new PacketTable();
+        packets.add(100, 100, 100, 500, Utils.Company.DHL, 0, 3.89);
+        packets.add(100, 100, 100, 500, Utils.Company.HERMES, 0, 3.69);
+        packets.add(500, 200, 100, 1500, Utils.Company.DHL, 1, 4.39);
+        packets.add(100, 100, 100, 500, Utils.Company.DHL, 0, 3.89);
+        packets.add(0, 0, 0, 0, Utils.Company.DHL, Calculator.REJECTED, Double.NaN);
+        packets.add(0, 0, 0, 0, Utils.Company.DHL, PacketTable.UNPRICED, Double.NaN);
+
+        TierIndex index = TierIndex.build(packets);
+        assertArrayEquals(new int[]{0, 3}, index.rows(Utils.Company.DHL, 0));
+        assertArrayEquals(new int[]{2}, index.rows(Utils.Company.DHL, 1));
+        assertArrayEquals(new int[]{1}, index.rows(Utils.Company.HERMES, 0));
+        assertEquals(0, index.count(Utils.Company.HERMES, 4));
+    }
+
+    @Test
+    public void repricesOnlyChangedTiers() throws IOException {
+        Project project = new Project(createPackets(2000), Utils.Company.DHL, true, 0.19, false);
+        project.priceAll();
+        TierIndex index = TierIndex.build(project.getPackets());
+
+        // DHL medium gets more expensive
+        ImportHandler newTariff = tariff("DHL;3.89;4.59;5.99;7.99;14.99;Hermes;3.69;4.19;5.79;6.99;10.99;");
+        RepriceReport report = project.reprice(newTariff);
+
+        int[] medium = index.rows(Utils.Company.DHL, 1);
+        assertTrue(medium.length > 0);
+        assertEquals(medium.length, report.getEvaluatedCount());
+        assertEquals(medium.length, report.size());
+        for (int i = 0; i < report.size(); i++) {
+            assertEquals(medium[i], report.getRow(i));
+            assertEquals(1, report.getNewTier(i));
+            assertEquals(Calculator.applyOptions(4.39, true, 0.19), report.getOldPrice(i));
+            assertEquals(Calculator.applyOptions(4.59, true, 0.19), report.getNewPrice(i));
+        }
+        assertEquals(newTariff.getTariffVersion(), project.getTariffVersion());
+
+        Project fresh = new Project(createPackets(2000), Utils.Company.DHL, true, 0.19, false, newTariff);
+        assertSameQuotes(fresh, project);
+    }
+
+    @Test
+    public void repricesOptimizedQuotesLikeANewSearch() throws IOException {
+        Project project = new Project(createPackets(150), Utils.Company.DHL, false, 0, true);
+        project.priceAll();
+
+        // Hermes medium gets more expensive and large gets cheaper than medium
+        ImportHandler newTariff = tariff("DHL;3.89;4.39;5.99;7.99;14.99;Hermes;3.69;4.49;4.29;6.99;10.99;");
+        RepriceReport report = project.reprice(newTariff);
+        assertTrue(report.size() > 0);
+        for (int i = 0; i < report.size(); i++) {
+            assertEquals(Utils.Company.HERMES, project.getPackets().getCompany(report.getRow(i)));
+        }
+
+        Project fresh = new Project(createPackets(150), Utils.Company.DHL, false, 0, true, newTariff);
+        assertSameQuotes(fresh, project);
+    }
+
+    @Test
+    public void projectFilesAreRepricedToTheCurrentTariff() throws IOException {
+        ImportHandler oldTariff = new ImportHandler(42, List.of(1.0, 2.0, 3.0, 4.0, 5.0),
+                List.of(1.5, 2.5, 3.5, 4.5, 5.5));
+        Project project = new Project(createPackets(500), Utils.Company.DHL, false, 0, false, oldTariff);
+        project.priceAll();
+        Path file = tempDir.resolve("project.pcp");
+        ProjectFile.write(file, project);
+
+        Project read = ProjectFile.read(file);
+        assertEquals(new Calculator().getTariffVersion(), read.getTariffVersion());
+        assertSameQuotes(new Project(createPackets(500), Utils.Company.DHL, false, 0, false), read);
+    }
+
+    @Test
+    public void optimizedRowsOfProjectFilesAreSearchedOnAccess() throws IOException {
+        ImportHandler oldTariff = new ImportHandler(42, List.of(1.0, 2.0, 3.0, 4.0, 5.0),
+                List.of(1.5, 2.5, 3.5, 4.5, 5.5));
+        Project project = new Project(createPackets(60), Utils.Company.DHL, false, 0, true, oldTariff);
+        project.priceAll();
+        Path file = tempDir.resolve("project.pcp");
+        ProjectFile.write(file, project);
+
+        // every tier got more expensive, so every priced row needs a new search
+        Project read = ProjectFile.read(file);
+        for (int row = 0; row < read.getPackets().size(); row++) {
+            if (project.getPackets().getTier(row) != Calculator.REJECTED) {
+                assertEquals(PacketTable.UNPRICED, read.getPackets().getTier(row));
+            }
+        }
+        assertSameQuotes(new Project(createPackets(60), Utils.Company.DHL, false, 0, true), read);
+    }
+
+    @Test
+    public void otherOptionsDropOnlyQuotesTheyAffect() {
+        Project project = new Project(createPackets(20), Utils.Company.DHL, false, 0, false);
+        project.priceAll();
+
+        Project hermes = project.withOptions(Utils.Company.HERMES, false, 0, false);
+        assertSame(project.getPackets(), hermes.getPackets());
+        assertEquals(Utils.Company.HERMES, hermes.getCompany());
+
+        Project express = project.withOptions(Utils.Company.DHL, true, 0, false);
+        assertEquals(PacketTable.UNPRICED, express.getPackets().getTier(0));
+        assertNotEquals(PacketTable.UNPRICED, project.getPackets().getTier(0));
+        assertSameQuotes(new Project(createPackets(20), Utils.Company.DHL, true, 0, false), express);
+
+        // optimized quotes do not depend on express and vat
+        Project optimized = project.withOptions(Utils.Company.DHL, false, 0, true);
+        assertSame(optimized.getPackets(), optimized.withOptions(Utils.Company.DHL, true, 0.19, true).getPackets());
+    }
+}